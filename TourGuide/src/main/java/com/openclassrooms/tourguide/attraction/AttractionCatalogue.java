@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Attractions loaded once from GpsUtil and shared by every reward calculation and nearby lookup.
+ * The attractions are held in an immutable array-backed list and can be reloaded with
+ * {@link #refresh()} without disturbing the readers of the previous version.
+ */
+public class AttractionCatalogue {
+	private final Logger logger = LoggerFactory.getLogger(AttractionCatalogue.class);
+	private final GpsUtil gpsUtil;
+	private volatile Snapshot snapshot;
+
+	public AttractionCatalogue(GpsUtil gpsUtil) {
+		this.gpsUtil = gpsUtil;
+		refresh();
+	}
+
+	/**
+	 * Reloads the attractions from GpsUtil. Attractions already known by name keep their previous
+	 * instance, and so their attractionId, because GpsUtil generates new ids on every call and the
+	 * rewards of the users are keyed by attraction id.
+	 */
+	public void refresh() {
+		List<Attraction> loaded = gpsUtil.getAttractions();
+		Snapshot previous = snapshot;
+		Map<String, Attraction> previousByName = new HashMap<>();
+		if (previous != null) {
+			for (Attraction attraction : previous.attractions()) {
+				previousByName.put(attraction.attractionName, attraction);
+			}
+		}
+
+		Attraction[] attractions = new Attraction[loaded.size()];
+		for (int i = 0; i < attractions.length; i++) {
+			Attraction attraction = loaded.get(i);
+			Attraction known = previousByName.get(attraction.attractionName);
+			attractions[i] = (known != null && known.latitude == attraction.latitude
+					&& known.longitude == attraction.longitude) ? known : attraction;
+		}
+		snapshot = new Snapshot(List.of(attractions));
+		logger.debug("Loaded " + attractions.length + " attractions");
+	}
+
+	/**
+	 * Returns an immutable list of the attractions, no copy is made.
+	 */
+	public List<Attraction> getAttractions() {
+		return snapshot.attractions();
+	}
+
+	public int size() {
+		return snapshot.attractions().size();
+	}
+
+	public AttractionIndex getIndex() {
+		return snapshot.index();
+	}
+
+	private record Snapshot(List<Attraction> attractions, AttractionIndex index) {
+		private Snapshot(List<Attraction> attractions) {
+			this(attractions, new AttractionIndex(attractions));
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * An attraction together with its distance in miles from a queried location.
+ */
+public record AttractionDistance(Attraction attraction, double distance) {
+}
@@ -0,0 +1,268 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import com.openclassrooms.tourguide.helper.DistanceHelper;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Spatial index over the attractions of the {@link AttractionCatalogue}. Attractions are bucketed
+ * in a latitude/longitude grid so that proximity queries only compute the exact distance for
+ * attractions in the cells around the queried location, instead of for every attraction.
+ */
+public class AttractionIndex {
+	private static final double CELL_SIZE_DEGREES = 1.0;
+	private static final int LATITUDE_CELLS = (int) Math.ceil(180 / CELL_SIZE_DEGREES);
+	private static final int LONGITUDE_CELLS = (int) Math.ceil(360 / CELL_SIZE_DEGREES);
+
+	// half of the earth circumference, no two points are further apart than this
+	private static final double MAX_DISTANCE = 180 * DistanceHelper.MILES_PER_DEGREE;
+	private static final double INITIAL_NEAREST_SEARCH_RADIUS = 50;
+
+	private final List<Attraction> attractions;
+	private final DistanceEngine distanceEngine;
+	// positions of the attractions in each non empty cell
+	private final Map<Integer, int[]> cells = new HashMap<>();
+
+	public AttractionIndex(List<Attraction> attractions) {
+		this.attractions = List.copyOf(attractions);
+		this.distanceEngine = new DistanceEngine(this.attractions);
+
+		Map<Integer, List<Integer>> positionsByCell = new HashMap<>();
+		for (int i = 0; i < this.attractions.size(); i++) {
+			Attraction attraction = this.attractions.get(i);
+			int cell = cellId(latitudeCell(attraction.latitude), longitudeCell(attraction.longitude));
+			positionsByCell.computeIfAbsent(cell, c -> new ArrayList<>()).add(i);
+		}
+		positionsByCell.forEach((cell, positions) ->
+				cells.put(cell, positions.stream().mapToInt(Integer::intValue).toArray()));
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public DistanceEngine getDistanceEngine() {
+		return distanceEngine;
+	}
+
+	/**
+	 * Returns every attraction whose distance from the location is lower or equal to the given
+	 * number of miles, in no particular order.
+	 */
+	public List<Attraction> getAttractionsWithin(Location location, double miles) {
+		List<Attraction> result = new ArrayList<>();
+		forEachPositionWithin(location, miles, position -> result.add(attractions.get(position)));
+		return result;
+	}
+
+	/**
+	 * Returns the k attractions closest to the location, sorted by increasing distance. Attractions
+	 * at the same distance are all kept, in catalogue order, as long as they are within the k closest.
+	 * The selection works on primitive haversines in a bounded heap, only the k results are allocated.
+	 */
+	public List<AttractionDistance> getNearestAttractions(Location location, int k) {
+		int wanted = Math.min(k, attractions.size());
+		if (wanted <= 0) {
+			return List.of();
+		}
+
+		double queryLatitude = Math.toRadians(location.latitude);
+		double queryLongitude = Math.toRadians(location.longitude);
+		double queryCosLatitude = Math.cos(queryLatitude);
+		NearestHeap nearest = new NearestHeap(wanted);
+		IntConsumer selector = position -> nearest.offer(position,
+				distanceEngine.haversine(position, queryLatitude, queryLongitude, queryCosLatitude));
+
+		// grow the search radius until it holds enough attractions, the k nearest are then all inside it
+		double radius = INITIAL_NEAREST_SEARCH_RADIUS;
+		forEachPositionWithin(location, radius, selector);
+		while (nearest.size() < wanted) {
+			radius *= 4;
+			nearest.clear();
+			forEachPositionWithin(location, radius, selector);
+		}
+
+		AttractionDistance[] result = new AttractionDistance[wanted];
+		// the heap root is the farthest of the selection, emptying the heap fills the result from the end
+		for (int i = wanted - 1; i >= 0; i--) {
+			int position = nearest.rootPosition();
+			double distance = DistanceHelper.MILES_PER_DEGREE * Math.toDegrees(DistanceEngine.angle(nearest.rootKey()));
+			result[i] = new AttractionDistance(attractions.get(position), distance);
+			nearest.removeRoot();
+		}
+		return List.of(result);
+	}
+
+	private void forEachPositionWithin(Location location, double miles, IntConsumer consumer) {
+		if (miles >= MAX_DISTANCE) {
+			for (int position = 0; position < attractions.size(); position++) {
+				consumer.accept(position);
+			}
+			return;
+		}
+
+		// query converted once, the distance engine then works on precomputed radians and cosines
+		double queryLatitude = Math.toRadians(location.latitude);
+		double queryLongitude = Math.toRadians(location.longitude);
+		double queryCosLatitude = Math.cos(queryLatitude);
+		double angularRadius = DistanceEngine.angularRadius(miles);
+		double maxHaversine = DistanceEngine.maxHaversine(miles);
+
+		// bounding box of the search circle, in degrees
+		double degreesRadius = miles / DistanceHelper.MILES_PER_DEGREE;
+		double minLatitude = location.latitude - degreesRadius;
+		double maxLatitude = location.latitude + degreesRadius;
+		double longitudeRadius;
+		if (minLatitude <= -90 || maxLatitude >= 90) {
+			// the circle contains a pole, every longitude can be reached
+			longitudeRadius = 180;
+		} else {
+			double sinLongitudeRadius = Math.sin(angularRadius) / queryCosLatitude;
+			longitudeRadius = sinLongitudeRadius >= 1 ? 180 : Math.toDegrees(Math.asin(sinLongitudeRadius));
+		}
+
+		int firstLatitudeCell = latitudeCell(Math.max(minLatitude, -90));
+		int lastLatitudeCell = latitudeCell(Math.min(maxLatitude, 90));
+		int longitudeCellCount = longitudeRadius >= 180 ? LONGITUDE_CELLS
+				: Math.min(LONGITUDE_CELLS, (int) Math.ceil(2 * longitudeRadius / CELL_SIZE_DEGREES) + 1);
+		int firstLongitudeCell = longitudeRadius >= 180 ? 0 : longitudeCell(location.longitude - longitudeRadius);
+
+		// scanning every attraction is cheaper than visiting a large number of mostly empty cells
+		long cellCount = (long) (lastLatitudeCell - firstLatitudeCell + 1) * longitudeCellCount;
+		if (cellCount > attractions.size()) {
+			for (int position = 0; position < attractions.size(); position++) {
+				if (distanceEngine.isWithin(position, queryLatitude, queryLongitude, queryCosLatitude, angularRadius, maxHaversine)) {
+					consumer.accept(position);
+				}
+			}
+			return;
+		}
+
+		for (int latitudeCell = firstLatitudeCell; latitudeCell <= lastLatitudeCell; latitudeCell++) {
+			for (int i = 0; i < longitudeCellCount; i++) {
+				int longitudeCell = Math.floorMod(firstLongitudeCell + i, LONGITUDE_CELLS);
+				int[] cell = cells.get(cellId(latitudeCell, longitudeCell));
+				if (cell == null) {
+					continue;
+				}
+				for (int position : cell) {
+					if (distanceEngine.isWithin(position, queryLatitude, queryLongitude, queryCosLatitude, angularRadius, maxHaversine)) {
+						consumer.accept(position);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Max-heap of the k closest positions seen so far, ordered by haversine then by position, so that
+	 * equal distances are ordered deterministically and never replace each other.
+	 */
+	private static class NearestHeap {
+		private final int[] positions;
+		private final double[] keys;
+		private int size;
+
+		private NearestHeap(int capacity) {
+			positions = new int[capacity];
+			keys = new double[capacity];
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		int rootPosition() {
+			return positions[0];
+		}
+
+		double rootKey() {
+			return keys[0];
+		}
+
+		void offer(int position, double key) {
+			if (size < positions.length) {
+				positions[size] = position;
+				keys[size] = key;
+				siftUp(size++);
+			} else if (isFarther(positions[0], keys[0], position, key)) {
+				positions[0] = position;
+				keys[0] = key;
+				siftDown(0);
+			}
+		}
+
+		void removeRoot() {
+			size--;
+			positions[0] = positions[size];
+			keys[0] = keys[size];
+			siftDown(0);
+		}
+
+		private void siftUp(int i) {
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!isFarther(positions[i], keys[i], positions[parent], keys[parent])) {
+					return;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int farthest = i;
+				int left = 2 * i + 1;
+				int right = left + 1;
+				if (left < size && isFarther(positions[left], keys[left], positions[farthest], keys[farthest])) {
+					farthest = left;
+				}
+				if (right < size && isFarther(positions[right], keys[right], positions[farthest], keys[farthest])) {
+					farthest = right;
+				}
+				if (farthest == i) {
+					return;
+				}
+				swap(i, farthest);
+				i = farthest;
+			}
+		}
+
+		private static boolean isFarther(int position, double key, int otherPosition, double otherKey) {
+			return key > otherKey || (key == otherKey && position > otherPosition);
+		}
+
+		private void swap(int i, int j) {
+			int position = positions[i];
+			positions[i] = positions[j];
+			positions[j] = position;
+			double key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+		}
+	}
+
+	private static int latitudeCell(double latitude) {
+		return Math.min(LATITUDE_CELLS - 1, Math.max(0, (int) Math.floor((latitude + 90) / CELL_SIZE_DEGREES)));
+	}
+
+	private static int longitudeCell(double longitude) {
+		return Math.floorMod((int) Math.floor((longitude + 180) / CELL_SIZE_DEGREES), LONGITUDE_CELLS);
+	}
+
+	private static int cellId(int latitudeCell, int longitudeCell) {
+		return latitudeCell * LONGITUDE_CELLS + longitudeCell;
+	}
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.helper.DistanceHelper;
+
+import gpsUtil.location.Location;
+
+/**
+ * Distance kernel between a queried point and a fixed set of locations. The coordinates of the
+ * locations are converted to radians and the cosine of their latitude is computed once, in
+ * primitive arrays, so that a distance only costs the trigonometry of the haversine formula.
+ * Nothing is allocated per distance.
+ */
+public class DistanceEngine {
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] cosLatitudes;
+
+	public DistanceEngine(List<? extends Location> locations) {
+		int size = locations.size();
+		latitudes = new double[size];
+		longitudes = new double[size];
+		cosLatitudes = new double[size];
+		for (int i = 0; i < size; i++) {
+			Location location = locations.get(i);
+			latitudes[i] = Math.toRadians(location.latitude);
+			longitudes[i] = Math.toRadians(location.longitude);
+			cosLatitudes[i] = Math.cos(latitudes[i]);
+		}
+	}
+
+	public int size() {
+		return latitudes.length;
+	}
+
+	/**
+	 * Distance in miles between the location at the given position and a point given in degrees.
+	 */
+	public double getDistance(int position, double latitude, double longitude) {
+		double queryLatitude = Math.toRadians(latitude);
+		return DistanceHelper.MILES_PER_DEGREE * Math.toDegrees(
+				angle(haversine(position, queryLatitude, Math.toRadians(longitude), Math.cos(queryLatitude))));
+	}
+
+	/**
+	 * Same as {@code getDistance(position, latitude, longitude) <= miles}, without the inverse trigonometry.
+	 */
+	public boolean isWithin(int position, double latitude, double longitude, double miles) {
+		double queryLatitude = Math.toRadians(latitude);
+		return isWithin(position, queryLatitude, Math.toRadians(longitude), Math.cos(queryLatitude),
+				angularRadius(miles), maxHaversine(miles));
+	}
+
+	/**
+	 * Proximity test with the query already converted: latitude and longitude in radians, cosine of
+	 * the latitude, and the radius as returned by {@link #angularRadius(double)} and {@link #maxHaversine(double)}.
+	 */
+	boolean isWithin(int position, double queryLatitude, double queryLongitude, double queryCosLatitude,
+					 double angularRadius, double maxHaversine) {
+		// bounding box pre-filter, the latitude difference alone already exceeds the radius
+		if (Math.abs(queryLatitude - latitudes[position]) > angularRadius) {
+			return false;
+		}
+		return haversine(position, queryLatitude, queryLongitude, queryCosLatitude) <= maxHaversine;
+	}
+
+	/**
+	 * Haversine of the central angle between the location at the given position and the query, in radians.
+	 */
+	double haversine(int position, double queryLatitude, double queryLongitude, double queryCosLatitude) {
+		double sinHalfLatitude = Math.sin((latitudes[position] - queryLatitude) / 2);
+		double sinHalfLongitude = Math.sin((longitudes[position] - queryLongitude) / 2);
+		return sinHalfLatitude * sinHalfLatitude
+				+ cosLatitudes[position] * queryCosLatitude * sinHalfLongitude * sinHalfLongitude;
+	}
+
+	/**
+	 * Central angle, in radians, for the given haversine.
+	 */
+	static double angle(double haversine) {
+		return 2 * Math.asin(Math.sqrt(Math.min(1, haversine)));
+	}
+
+	static double angularRadius(double miles) {
+		return Math.min(Math.PI, Math.toRadians(miles / DistanceHelper.MILES_PER_DEGREE));
+	}
+
+	static double maxHaversine(double miles) {
+		double sinHalfRadius = Math.sin(angularRadius(miles) / 2);
+		return sinHalfRadius * sinHalfRadius;
+	}
+}
@@ -0,0 +1,55 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.ToIntBiFunction;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded cache of the reward points returned by RewardCentral for an attraction and a user.
+ * Entries are evicted when the cache is full or once their time to live has expired.
+ */
+public class RewardPointsCache {
+	private final Cache<RewardPointsKey, Integer> cache;
+	private final ToIntBiFunction<UUID, UUID> rewardPointsLoader;
+
+	/**
+	 * @param rewardPointsLoader called with the attraction id and the user id on a cache miss
+	 */
+	public RewardPointsCache(long maximumSize, Duration timeToLive, ToIntBiFunction<UUID, UUID> rewardPointsLoader) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(timeToLive)
+				.recordStats()
+				.build();
+		this.rewardPointsLoader = rewardPointsLoader;
+	}
+
+	public int getRewardPoints(UUID attractionId, UUID userId) {
+		RewardPointsKey key = new RewardPointsKey(attractionId, userId);
+		Integer rewardPoints = cache.getIfPresent(key);
+		if (rewardPoints == null) {
+			// loaded outside of the cache, a slow RewardCentral call must not lock other entries
+			rewardPoints = rewardPointsLoader.applyAsInt(attractionId, userId);
+			cache.put(key, rewardPoints);
+		}
+		return rewardPoints;
+	}
+
+	/**
+	 * Hit, miss and eviction counts since the cache was created.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	public Cache<?, ?> getCache() {
+		return cache;
+	}
+
+	private record RewardPointsKey(UUID attractionId, UUID userId) {
+	}
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import tripPricer.Provider;
+
+/**
+ * Cache of the trip deals returned by TripPricer, keyed by every input of the pricing.
+ * Concurrent requests for the same inputs share a single in-flight TripPricer call.
+ */
+public class TripDealsCache {
+	private final AsyncCache<TripDealsKey, List<Provider>> cache;
+	private final Function<TripDealsKey, List<Provider>> tripDealsLoader;
+
+	public TripDealsCache(long maximumSize, Duration timeToLive, Function<TripDealsKey, List<Provider>> tripDealsLoader) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(timeToLive)
+				.recordStats()
+				.buildAsync();
+		this.tripDealsLoader = tripDealsLoader;
+	}
+
+	/**
+	 * Returns the cached deals for these inputs, or prices them if they are absent or expired.
+	 * The same unmodifiable list is returned as long as the inputs do not change.
+	 *
+	 * TripPricer is called on the calling thread, requests for the same inputs arriving meanwhile
+	 * wait for its result.
+	 */
+	public List<Provider> getTripDeals(TripDealsKey key) {
+		CompletableFuture<List<Provider>> cached = cache.getIfPresent(key);
+		if (cached != null) {
+			return cached.join();
+		}
+		CompletableFuture<List<Provider>> pricing = new CompletableFuture<>();
+		CompletableFuture<List<Provider>> inFlight = cache.asMap().putIfAbsent(key, pricing);
+		if (inFlight != null) {
+			return inFlight.join();
+		}
+		try {
+			pricing.complete(List.copyOf(tripDealsLoader.apply(key)));
+		} catch (Throwable e) {
+			pricing.completeExceptionally(e);
+			throw e;
+		} finally {
+			// a failed pricing is not cached, the next request calls TripPricer again
+			if (pricing.isCompletedExceptionally()) {
+				cache.asMap().remove(key, pricing);
+			}
+		}
+		return pricing.join();
+	}
+
+	public CacheStats getStats() {
+		return cache.synchronous().stats();
+	}
+
+	public AsyncCache<?, ?> getCache() {
+		return cache;
+	}
+
+	public record TripDealsKey(UUID userId, int numberOfAdults, int numberOfChildren, int tripDuration,
+							   int cumulativeRewardPoints) {
+	}
+}
@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Executor accepting a bounded number of tasks that have not completed yet, so that the tasks
+ * waiting on a slow external service, and the users they hold, cannot grow without limit. The
+ * bound applies the same way to a platform pool, where it caps the pool queue, and to virtual
+ * threads, where it caps the threads started. A task submitted when the bound is reached is
+ * handled by the {@link QueuePolicy}. Bound to a registry, it publishes its queue depth, active
+ * tasks, capacity, rejections and caller-runs counts tagged with its name.
+ */
+public class BoundedExecutor extends AbstractExecutorService implements MeterBinder {
+	private final String name;
+	private final ExecutorService delegate;
+	private final Semaphore permits;
+	private final int capacity;
+	private final QueuePolicy policy;
+	private final Duration blockTimeout;
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong callerRuns = new AtomicLong();
+
+	/**
+	 * @param capacity maximum number of tasks accepted and not completed yet, running tasks included
+	 */
+	public BoundedExecutor(String name, ExecutorService delegate, int capacity, QueuePolicy policy, Duration blockTimeout) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.name = name;
+		this.delegate = delegate;
+		this.permits = new Semaphore(capacity);
+		this.capacity = capacity;
+		this.policy = policy;
+		this.blockTimeout = blockTimeout;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (!acquire()) {
+			if (policy == QueuePolicy.CALLER_RUNS && !isShutdown()) {
+				callerRuns.incrementAndGet();
+				task.run();
+				return;
+			}
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("The " + name + " executor is full, " + capacity + " tasks pending");
+		}
+
+		queued.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				queued.decrementAndGet();
+				active.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					active.decrementAndGet();
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			permits.release();
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	private boolean acquire() {
+		if (policy != QueuePolicy.BLOCK_WITH_TIMEOUT) {
+			return permits.tryAcquire();
+		}
+		try {
+			return permits.tryAcquire(blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Tasks accepted and waiting for a thread.
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Tasks rejected with a RejectedExecutionException.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Tasks run by the submitting thread because the executor was full.
+	 */
+	public long getCallerRunsCount() {
+		return callerRuns.get();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder(TourGuideMetrics.EXECUTOR_QUEUED, this, BoundedExecutor::getQueueDepth)
+				.description("Tasks waiting for a thread").tag("name", name).register(registry);
+		Gauge.builder(TourGuideMetrics.EXECUTOR_ACTIVE, this, BoundedExecutor::getActiveCount)
+				.description("Tasks running").tag("name", name).register(registry);
+		Gauge.builder(TourGuideMetrics.EXECUTOR_CAPACITY, this, BoundedExecutor::getCapacity)
+				.description("Tasks accepted before the queue policy applies").tag("name", name).register(registry);
+		FunctionCounter.builder(TourGuideMetrics.EXECUTOR_REJECTED, this, BoundedExecutor::getRejectedCount)
+				.description("Tasks rejected").tag("name", name).register(registry);
+		FunctionCounter.builder(TourGuideMetrics.EXECUTOR_CALLER_RUNS, this, BoundedExecutor::getCallerRunsCount)
+				.description("Tasks run by the submitting thread").tag("name", name).register(registry);
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of concurrent calls to a downstream service. With virtual threads the
+ * executor no longer limits the number of calls in flight, the limiter protects the service instead.
+ */
+public class ConcurrencyLimiter {
+	private final Semaphore permits;
+
+	/**
+	 * @param maxConcurrentCalls the maximum number of calls in flight, 0 or less for no limit
+	 */
+	public ConcurrencyLimiter(int maxConcurrentCalls) {
+		this.permits = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+	}
+
+	public <T> T call(Supplier<T> call) {
+		if (permits == null) {
+			return call.get();
+		}
+		permits.acquireUninterruptibly();
+		try {
+			return call.get();
+		} finally {
+			permits.release();
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.concurrent;
+
+/**
+ * How the blocking calls to GpsUtil and RewardCentral are executed.
+ */
+public enum ExecutionMode {
+	// fixed pool of platform threads, the pool size caps the number of calls in flight
+	PLATFORM,
+	// one virtual thread per task, requires a Java 21+ runtime and falls back to PLATFORM otherwise
+	VIRTUAL
+}
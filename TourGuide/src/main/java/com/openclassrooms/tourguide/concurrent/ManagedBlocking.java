@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking calls through {@link ForkJoinPool#managedBlock}, so that a fork-join pool adds a
+ * spare worker while one of its workers waits on an external service instead of losing parallelism.
+ * Outside of a fork-join pool the call simply runs on the current thread.
+ */
+public class ManagedBlocking {
+
+	private ManagedBlocking() {
+	}
+
+	public static <T> T call(Supplier<T> call) {
+		BlockingCall<T> blocker = new BlockingCall<>(call);
+		try {
+			ForkJoinPool.managedBlock(blocker);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a blocking call", e);
+		}
+		return blocker.result;
+	}
+
+	private static class BlockingCall<T> implements ForkJoinPool.ManagedBlocker {
+		private final Supplier<T> call;
+		private T result;
+		private boolean done;
+
+		private BlockingCall(Supplier<T> call) {
+			this.call = call;
+		}
+
+		@Override
+		public boolean block() {
+			result = call.get();
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.concurrent;
+
+/**
+ * What a {@link BoundedExecutor} does with a task submitted while its queue is full.
+ *
+ * Dropping the oldest queued task is deliberately not offered: the tasks are the bodies of
+ * CompletableFutures, and a discarded task would leave its future, and every caller waiting on
+ * it, incomplete forever.
+ */
+public enum QueuePolicy {
+	// the submitting thread runs the task itself, which slows the producer down
+	CALLER_RUNS,
+	// the submitting thread waits for room in the queue, and the task is rejected after the timeout
+	BLOCK_WITH_TIMEOUT,
+	// the task is rejected immediately
+	ABORT
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.concurrent;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the executors running the blocking calls to the external services.
+ */
+public class TaskExecutors {
+	private static final Logger logger = LoggerFactory.getLogger(TaskExecutors.class);
+
+	private TaskExecutors() {
+	}
+
+	public static ExecutorService newExecutor(String name, ExecutionMode mode, int poolSize) {
+		if (mode == ExecutionMode.VIRTUAL) {
+			ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+			if (virtualExecutor != null) {
+				logger.info("Running " + name + " tasks on virtual threads");
+				return virtualExecutor;
+			}
+			logger.warn("Virtual threads are not available on Java " + Runtime.version().feature()
+					+ ", running " + name + " tasks on " + poolSize + " platform threads");
+		}
+		return Executors.newFixedThreadPool(poolSize, namedThreadFactory(name));
+	}
+
+	/**
+	 * Executor of {@link #newExecutor(String, ExecutionMode, int)} accepting at most capacity tasks not completed yet.
+	 */
+	public static BoundedExecutor newBoundedExecutor(String name, ExecutionMode mode, int poolSize, int capacity,
+													 QueuePolicy policy, Duration blockTimeout) {
+		return new BoundedExecutor(name, newExecutor(name, mode, poolSize), capacity, policy, blockTimeout);
+	}
+
+	/**
+	 * Work-stealing pool for batch processing. Workers blocked in {@link ManagedBlocking} are
+	 * compensated by spare workers, up to maxPoolSize threads, after which the pool keeps running
+	 * with the workers it has.
+	 */
+	public static ForkJoinPool newWorkStealingPool(String name, int parallelism, int maxPoolSize) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName(name + "-" + threadNumber.incrementAndGet());
+			return thread;
+		};
+		return new ForkJoinPool(parallelism, threadFactory, null, false,
+				0, Math.max(parallelism, maxPoolSize), 1, pool -> true, 60, TimeUnit.SECONDS);
+	}
+
+	// looked up reflectively so that the application still builds and runs on Java 17
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory namedThreadFactory(String name) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
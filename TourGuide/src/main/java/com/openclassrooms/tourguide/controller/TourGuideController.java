@@ -1,19 +1,29 @@
 package com.openclassrooms.tourguide.controller;
 
+import java.io.OutputStream;
 import java.util.List;
-import java.util.SortedMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
-import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.dto.RewardSummaryDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotPageDTO;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserExportService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -24,6 +34,9 @@ public class TourGuideController {
 
 	@Autowired
 	TourGuideService tourGuideService;
+
+	@Autowired
+	UserExportService userExportService;
 	
     @RequestMapping("/")
     public String index() {
@@ -38,25 +51,64 @@ public class TourGuideController {
 
     /**
      * This endpoint receives a username as a request parameter and returns a list of the
-     * five closest attractions to the user's current location. Each attraction is returned as
-     * a NearbyAttractionDTO object.
+     * closest attractions to the user's current location, five unless a limit is given. Each
+     * attraction is returned as a NearbyAttractionDTO object.
+     *
+     * The response is written asynchronously: the request thread is released while the user is
+     * located and the reward points of the attractions are looked up in parallel.
      *
      * @param userName The username of the user for whom we are finding nearby attractions.
-     * @return A list of NearbyAttractionDTO objects, representing the five closest attractions to the user's location.
+     * @param limit The number of attractions returned.
+     * @return A future list of NearbyAttractionDTO objects, representing the closest attractions to the user's location.
      *
      * @author Ivano P
      */
-        @RequestMapping("/getNearbyAttractions")
-        public List<NearbyAttractionDTO> getNearbyAttractions(@RequestParam String userName) throws ExecutionException,
-            InterruptedException {
-        //get user location
-    	VisitedLocation userLocation = tourGuideService.getUserLocation(getUser(userName)).get();
+    @RequestMapping("/getNearbyAttractions")
+    public CompletableFuture<List<NearbyAttractionDTO>> getNearbyAttractions(@RequestParam String userName,
+            @RequestParam(defaultValue = "" + TourGuideService.NEARBY_ATTRACTIONS_COUNT) int limit) {
+        return tourGuideService.getNearbyAttractionsFuture(getUser(userName), limit);
+    }
+
+    /**
+     * Returns the latest known location and rewards of several users in one response. Unknown
+     * user names are skipped, and no user is located.
+     */
+    @RequestMapping("/getUsers")
+    public List<UserSnapshotDTO> getUsers(@RequestParam List<String> userNames) {
+        return tourGuideService.getUserSnapshots(userNames);
+    }
 
-        //TreeMap of attractions with their distance from user, distance is the key and attractions are value.
-        SortedMap<Double, Attraction> distanceFromUserAndAttraction = tourGuideService.getAttractionsDistanceFromLocationFuture(userLocation).get();
+    /**
+     * Pages through every user in name order, pass the nextCursor of a page to get the next one.
+     */
+    @RequestMapping("/getUsersPage")
+    public UserSnapshotPageDTO getUsersPage(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + TourGuideService.DEFAULT_USER_PAGE_SIZE) int limit) {
+        return tourGuideService.getUserSnapshotPage(cursor, limit);
+    }
 
-        //return the closest attractions to visited location
-        return tourGuideService.getNearByAttractionsFuture(distanceFromUserAndAttraction, getUser(userName), userLocation).get();
+    /**
+     * Returns the last known location of every located user, keyed by user id.
+     */
+    @RequestMapping("/getAllCurrentLocations")
+    public Map<UUID, Location> getAllCurrentLocations() {
+        return tourGuideService.getAllCurrentLocations();
+    }
+
+    /**
+     * Streams the last known location of every located user as newline-delimited JSON.
+     */
+    @RequestMapping("/exportLocations")
+    public WebAsyncTask<Void> exportLocations(HttpServletResponse response) {
+        return export(response, userExportService::writeLocations);
+    }
+
+    /**
+     * Streams the number of rewards and the reward points of every user as newline-delimited JSON.
+     */
+    @RequestMapping("/exportRewards")
+    public WebAsyncTask<Void> exportRewards(HttpServletResponse response) {
+        return export(response, userExportService::writeRewards);
     }
 
     @RequestMapping("/getRewards") 
@@ -64,11 +116,30 @@ public class TourGuideController {
     	return tourGuideService.getUserRewards(getUser(userName));
     }
        
+    /**
+     * Returns the number of rewards of the user and their cumulative points, without the rewards themselves.
+     */
+    @RequestMapping("/getRewardSummary")
+    public RewardSummaryDTO getRewardSummary(@RequestParam String userName) {
+        return tourGuideService.getRewardSummary(getUser(userName));
+    }
+
     @RequestMapping("/getTripDeals")
     public List<Provider> getTripDeals(@RequestParam String userName) {
     	return tourGuideService.getTripDeals(getUser(userName));
     }
     
+    // written asynchronously with the export timeout, the default timeout of the other requests is kept
+    private WebAsyncTask<Void> export(HttpServletResponse response, StreamingResponseBody body) {
+        response.setContentType(UserExportService.NDJSON_MEDIA_TYPE);
+        return new WebAsyncTask<>(userExportService.getTimeout().toMillis(), () -> {
+            OutputStream out = response.getOutputStream();
+            body.writeTo(out);
+            out.flush();
+            return null;
+        });
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RewardSummaryDTO {
+    private UUID userId;
+    private String userName;
+    private int rewardCount;
+    private int rewardPoints;
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.VisitedLocation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Latest known location and rewards of a user, lastVisitedLocation is null when the user was never located.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSnapshotDTO {
+    private UUID userId;
+    private String userName;
+    private VisitedLocation lastVisitedLocation;
+    private List<UserReward> userRewards;
+}
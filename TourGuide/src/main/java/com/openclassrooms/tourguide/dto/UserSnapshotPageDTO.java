@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A page of users in name order, nextCursor is passed to get the next page and is null after the last one.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSnapshotPageDTO {
+    private List<UserSnapshotDTO> users;
+    private String nextCursor;
+}
@@ -25,4 +25,10 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>("Something went wrong while finding your location. Please try again later", HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException iae) {
+        log.debug("Invalid request: ", iae);
+        return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
 }
@@ -0,0 +1,34 @@
+package com.openclassrooms.tourguide.helper;
+
+import gpsUtil.location.Location;
+
+public class DistanceHelper {
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+	// one degree of great-circle arc is 60 nautical miles
+	public static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+
+	private DistanceHelper() {
+	}
+
+	public static double getDistance(Location loc1, Location loc2) {
+		return getDistance(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+	}
+
+	/**
+	 * Great-circle distance in statute miles between two points given in degrees. The haversine
+	 * formula is used, it stays accurate for points very close to each other.
+	 */
+	public static double getDistance(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double lat1 = Math.toRadians(latitude1);
+		double lat2 = Math.toRadians(latitude2);
+		double sinHalfLatitude = Math.sin((lat2 - lat1) / 2);
+		double sinHalfLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+
+		double haversine = sinHalfLatitude * sinHalfLatitude
+				+ Math.cos(lat1) * Math.cos(lat2) * sinHalfLongitude * sinHalfLongitude;
+		double angle = 2 * Math.asin(Math.sqrt(Math.min(1, haversine)));
+
+		return MILES_PER_DEGREE * Math.toDegrees(angle);
+	}
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.tourguide.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Names of the application meters, and the timers shared by the services. Timers publish a
+ * percentile histogram so that latency percentiles can be aggregated by the monitoring backend.
+ */
+public class TourGuideMetrics {
+	public static final String TRACKING = "tourguide.tracking";
+	public static final String TRACKING_ERRORS = "tourguide.tracking.errors";
+	public static final String TRACKING_BATCH = "tourguide.tracking.batch";
+	public static final String REWARDS_CALCULATION = "tourguide.rewards.calculation";
+	public static final String REWARDS_GRANTED = "tourguide.rewards.granted";
+	public static final String EXTERNAL_CALLS = "tourguide.external.calls";
+	public static final String TRACKER_SHARD_DURATION = "tourguide.tracker.shard.duration";
+	public static final String TRACKER_SHARD_LAG = "tourguide.tracker.shard.lag";
+	public static final String TRACKER_SHARD_SKIPPED = "tourguide.tracker.shard.skipped";
+	public static final String EXECUTOR_QUEUED = "tourguide.executor.queued";
+	public static final String EXECUTOR_ACTIVE = "tourguide.executor.active";
+	public static final String EXECUTOR_CAPACITY = "tourguide.executor.capacity";
+	public static final String EXECUTOR_REJECTED = "tourguide.executor.rejected";
+	public static final String EXECUTOR_CALLER_RUNS = "tourguide.executor.caller.runs";
+
+	private TourGuideMetrics() {
+	}
+
+	public static Timer timer(MeterRegistry meterRegistry, String name, String description, String... tags) {
+		return Timer.builder(name)
+				.description(description)
+				.tags(tags)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Timer of the calls to an external service, tagged with the service and the called method.
+	 */
+	public static Timer externalCallTimer(MeterRegistry meterRegistry, String service, String method) {
+		return timer(meterRegistry, EXTERNAL_CALLS, "Calls to the external services", "service", service, "method", method);
+	}
+}
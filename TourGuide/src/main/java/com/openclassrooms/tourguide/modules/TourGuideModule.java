@@ -1,13 +1,17 @@
 package com.openclassrooms.tourguide.modules;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
-import com.openclassrooms.tourguide.service.RewardsService;
+import tripPricer.TripPricer;
 
 @Configuration
+@EnableConfigurationProperties(TourGuideProperties.class)
 public class TourGuideModule {
 	
 	@Bean
@@ -16,13 +20,18 @@ public class TourGuideModule {
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public AttractionCatalogue getAttractionCatalogue() {
+		return new AttractionCatalogue(getGpsUtil());
 	}
 	
 	@Bean
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
+
+	@Bean
+	public TripPricer getTripPricer() {
+		return new TripPricer();
+	}
 	
 }
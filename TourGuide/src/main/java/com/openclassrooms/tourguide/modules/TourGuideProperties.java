@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide.modules;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.openclassrooms.tourguide.concurrent.ExecutionMode;
+import com.openclassrooms.tourguide.concurrent.QueuePolicy;
+import com.openclassrooms.tourguide.user.HistoryRetention;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tuning settings of the application, bound from the "tourguide" properties.
+ * The defaults are used by the services created without Spring.
+ */
+@Data
+@ConfigurationProperties(prefix = "tourguide")
+public class TourGuideProperties {
+	private Execution execution = new Execution();
+	private Caches cache = new Caches();
+	private Tracking tracker = new Tracking();
+	private History history = new History();
+	private Export export = new Export();
+
+	@Data
+	public static class Execution {
+		private ExecutionMode mode = ExecutionMode.PLATFORM;
+		// pool sizes used in PLATFORM mode
+		private int trackingPoolSize = 10;
+		private int rewardsPoolSize = 50;
+		// maximum number of concurrent calls to each external service, 0 for no limit
+		private int maxConcurrentGpsCalls = 0;
+		private int maxConcurrentRewardCentralCalls = 0;
+		// bound on the tasks waiting for each executor, and what happens to the tasks submitted past it
+		private QueueSettings trackingQueue = new QueueSettings(10_000, QueuePolicy.CALLER_RUNS, Duration.ofSeconds(30));
+		private QueueSettings rewardsQueue = new QueueSettings(10_000, QueuePolicy.CALLER_RUNS, Duration.ofSeconds(30));
+		// batch reward calculation: users per batch, and parallelism and maximum threads of its fork-join pool
+		private int rewardsBatchSize = 1000;
+		private int rewardsBatchParallelism = Runtime.getRuntime().availableProcessors();
+		private int rewardsBatchMaxPoolSize = 256;
+		// batch tracking: users per batch, batches fetching locations at the same time, and threads of its fork-join pool
+		private int trackingBatchSize = 1000;
+		private int trackingBatchesInFlight = 4;
+		private int trackingBatchParallelism = Runtime.getRuntime().availableProcessors();
+		private int trackingBatchMaxPoolSize = 256;
+	}
+
+	@Data
+	public static class Tracking {
+		// every user is located once per interval
+		private Duration pollingInterval = Duration.ofMinutes(5);
+		// the users are split into shards whose runs are spread over the interval
+		private int shardCount = 10;
+	}
+
+	@Data
+	public static class History {
+		// most recent visited locations always kept
+		private int recentCapacity = HistoryRetention.DEFAULT.recentCapacity();
+		// older locations are dropped past this count or once older than the retention
+		private int maxArchived = HistoryRetention.DEFAULT.maxArchived();
+		private Duration retention = HistoryRetention.DEFAULT.archiveRetention();
+
+		public HistoryRetention toRetention() {
+			return new HistoryRetention(recentCapacity, maxArchived, retention);
+		}
+	}
+
+	@Data
+	public static class Export {
+		// time allowed to stream every user, the other asynchronous requests keep the default timeout
+		private Duration timeout = Duration.ofMinutes(5);
+	}
+
+	@Data
+	public static class Caches {
+		private CacheSettings rewardPoints = new CacheSettings(100_000, Duration.ofHours(1));
+		private CacheSettings tripDeals = new CacheSettings(100_000, Duration.ofMinutes(10));
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class QueueSettings {
+		// tasks accepted and not completed yet, running tasks included
+		private int capacity;
+		private QueuePolicy policy;
+		// how long BLOCK_WITH_TIMEOUT waits for room before rejecting the task
+		private Duration blockTimeout;
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class CacheSettings {
+		private long maximumSize;
+		private Duration timeToLive;
+	}
+}
@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.service;
+
+/**
+ * Progress of a batch reward calculation, reported once per completed batch.
+ *
+ * @param batchIndex index of the completed batch
+ * @param batchUsers number of users in the completed batch
+ * @param completedBatches batches completed so far, this one included
+ * @param batchCount total number of batches
+ * @param completedUsers users of the completed batches
+ * @param totalUsers total number of users
+ * @param failure the failure of the batch, null when it succeeded
+ */
+public record RewardBatchProgress(int batchIndex, int batchUsers, int completedBatches, int batchCount,
+								  int completedUsers, int totalUsers, Throwable failure) {
+
+	public boolean isDone() {
+		return completedBatches == batchCount;
+	}
+}
@@ -1,40 +1,113 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.concurrent.BoundedExecutor;
+import com.openclassrooms.tourguide.concurrent.ConcurrencyLimiter;
+import com.openclassrooms.tourguide.concurrent.ManagedBlocking;
+import com.openclassrooms.tourguide.concurrent.TaskExecutors;
+import com.openclassrooms.tourguide.helper.DistanceHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import rewardCentral.RewardCentral;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
-public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-
+public class RewardsService implements AutoCloseable {
+	private final Logger logger = LoggerFactory.getLogger(RewardsService.class);
 	// proximity in miles
     private int defaultProximityBuffer = 10;
 	private int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
-	private final GpsUtil gpsUtil;
+	// when enabled, only the locations visited since the last calculation are evaluated
+	private boolean incrementalRewards = true;
 	private final RewardCentral rewardsCentral;
+	private final AttractionCatalogue attractionCatalogue;
 
-	//creating cash thread pool to call calculateReward concurrently
-	private final ExecutorService executorService = Executors.newFixedThreadPool(50);
+	//executor to call calculateReward concurrently, platform thread pool or virtual threads, with a bounded queue
+	private final BoundedExecutor executorService;
+	//work-stealing pool of the batch calculation
+	private final ForkJoinPool batchPool;
+	private final int batchSize;
+	private final ConcurrencyLimiter rewardCentralLimiter;
+	private final RewardPointsCache rewardPointsCache;
+	private final Timer calculationTimer;
+	private final Counter rewardsGranted;
 
 
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
+		this(rewardCentral, new AttractionCatalogue(gpsUtil), new TourGuideProperties());
+	}
+
+	public RewardsService(RewardCentral rewardCentral, AttractionCatalogue attractionCatalogue, TourGuideProperties properties) {
+		this(rewardCentral, attractionCatalogue, properties, new SimpleMeterRegistry());
+	}
+
+	@Autowired
+	public RewardsService(RewardCentral rewardCentral, AttractionCatalogue attractionCatalogue, TourGuideProperties properties,
+						  MeterRegistry meterRegistry) {
 		this.rewardsCentral = rewardCentral;
+		this.attractionCatalogue = attractionCatalogue;
+
+		TourGuideProperties.Execution execution = properties.getExecution();
+		TourGuideProperties.QueueSettings rewardsQueue = execution.getRewardsQueue();
+		this.executorService = TaskExecutors.newBoundedExecutor("rewards", execution.getMode(), execution.getRewardsPoolSize(),
+				rewardsQueue.getCapacity(), rewardsQueue.getPolicy(), rewardsQueue.getBlockTimeout());
+		this.batchPool = TaskExecutors.newWorkStealingPool("rewards-batch", execution.getRewardsBatchParallelism(),
+				execution.getRewardsBatchMaxPoolSize());
+		this.batchSize = execution.getRewardsBatchSize();
+		this.rewardCentralLimiter = new ConcurrencyLimiter(execution.getMaxConcurrentRewardCentralCalls());
+
+		Timer rewardCentralTimer = TourGuideMetrics.externalCallTimer(meterRegistry, "rewardCentral", "getAttractionRewardPoints");
+		TourGuideProperties.CacheSettings rewardPointsCacheSettings = properties.getCache().getRewardPoints();
+		this.rewardPointsCache = new RewardPointsCache(rewardPointsCacheSettings.getMaximumSize(),
+				rewardPointsCacheSettings.getTimeToLive(),
+				//managed so that a batch worker waiting on RewardCentral is replaced by a spare worker
+				(attractionId, userId) -> ManagedBlocking.call(() -> rewardCentralLimiter.call(() ->
+						rewardCentralTimer.record(() -> rewardsCentral.getAttractionRewardPoints(attractionId, userId)))));
+
+		this.calculationTimer = TourGuideMetrics.timer(meterRegistry, TourGuideMetrics.REWARDS_CALCULATION,
+				"Reward calculations of a user");
+		this.rewardsGranted = Counter.builder(TourGuideMetrics.REWARDS_GRANTED)
+				.description("Rewards granted to the users").register(meterRegistry);
+		executorService.bindTo(meterRegistry);
+		new ExecutorServiceMetrics(batchPool, "rewards-batch", List.of()).bindTo(meterRegistry);
+		CaffeineCacheMetrics.monitor(meterRegistry, rewardPointsCache.getCache(), "rewardPoints");
 	}
 	
+	/**
+	 * Shuts down the rewards executors, the calculations already submitted are completed.
+	 */
+	@Override
+	public void close() {
+		executorService.shutdown();
+		batchPool.shutdown();
+	}
+
 	public void setProximityBuffer(int proximityBuffer) {
 		this.proximityBuffer = proximityBuffer;
 	}
@@ -43,64 +116,116 @@ public class RewardsService {
 		proximityBuffer = defaultProximityBuffer;
 	}
 
+	public void setIncrementalRewards(boolean incrementalRewards) {
+		this.incrementalRewards = incrementalRewards;
+	}
+
+	public BoundedExecutor getRewardsExecutor() {
+		return executorService;
+	}
+
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
+	}
+
+	public AttractionCatalogue getAttractionCatalogue() {
+		return attractionCatalogue;
+	}
+
+	public AttractionIndex getAttractionIndex() {
+		return attractionCatalogue.getIndex();
+	}
+
 	//for test, calculate rewards for all users and wait to all users to be processed
 	public void calculateRewardsForAllUsers(List<User> users){
-		//user stream() to process user
-		List<CompletableFuture<Void>> futures = users.stream().map((u) -> calculateRewardsFuture(u))
-				.toList();
+		calculateRewardsInBatches(users).join();
+	}
+
+	/**
+	 * Calculates the rewards of the users in batches of the configured size, progress is logged per batch.
+	 */
+	public CompletableFuture<Void> calculateRewardsInBatches(List<User> users) {
+		return calculateRewardsInBatches(users, batchSize, progress -> logger.debug("Rewards batch "
+				+ progress.completedBatches() + "/" + progress.batchCount() + " completed, "
+				+ progress.completedUsers() + "/" + progress.totalUsers() + " users"));
+	}
 
-		//wait for all CompletableFutures to complete
-		CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-		allOf.join();
+	/**
+	 * Calculates the rewards of the users in batches processed on a work-stealing pool. One future
+	 * is created per batch instead of one per user, the listener is called when each batch completes
+	 * and the returned future completes when every batch has.
+	 */
+	public CompletableFuture<Void> calculateRewardsInBatches(List<User> users, int batchSize, Consumer<RewardBatchProgress> listener) {
+		UserBatches userBatches = new UserBatches(users, batchSize);
+		int batchCount = userBatches.batchCount();
+		AtomicInteger completedBatches = new AtomicInteger();
+		AtomicInteger completedUsers = new AtomicInteger();
+
+		List<CompletableFuture<Void>> batches = new ArrayList<>(batchCount);
+		for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+			int index = batchIndex;
+			int batchUsers = userBatches.batch(batchIndex).size();
+			batches.add(userBatches.runAsync(batchIndex, this::calculateRewards, batchPool)
+					.whenComplete((result, e) -> listener.accept(new RewardBatchProgress(index, batchUsers,
+							completedBatches.incrementAndGet(), batchCount, completedUsers.addAndGet(batchUsers),
+							userBatches.userCount(), e))));
+		}
+		return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]));
 	}
 
 	public CompletableFuture<Void> calculateRewardsFuture(User user){
-		return CompletableFuture.runAsync(() ->{
-			List<VisitedLocation> userLocations = user.getVisitedLocations();
-			List<Attraction> attractions = gpsUtil.getAttractions();
-
-			//defensive copies to make sure the versions of the list we are iterating through are no longer being updated
-			List<VisitedLocation> userLocationsCopy = new ArrayList<>(userLocations);
-			List<Attraction> attractionsCopy = new ArrayList<>(attractions);
-
-			for(VisitedLocation visitedLocation : userLocationsCopy) {
-				for(Attraction attraction : attractionsCopy) {
-					if(user.getUserRewards().stream().filter(r -> r.attraction.attractionName
-							.equals(attraction.attractionName)).count() == 0) {
-						if(nearAttraction(visitedLocation, attraction)) {
-							user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-						}
+		return CompletableFuture.runAsync(() -> calculateRewards(user), executorService);
+	}
+
+	/**
+	 * Calculates the rewards of the user on the calling thread.
+	 */
+	public void calculateRewards(User user) {
+		calculationTimer.record(() -> doCalculateRewards(user));
+	}
+
+	private void doCalculateRewards(User user) {
+		//locations before the watermark were already evaluated, the attractions near them are already rewarded
+		long firstSequence = incrementalRewards ? user.getRewardsWatermark() : 0;
+
+		//snapshot of the retained locations to evaluate, it is not affected by locations tracked in the meantime
+		VisitedLocationHistory.Slice newLocations = user.getVisitedLocationsFrom(firstSequence);
+
+		//index of the current catalogue, a concurrent refresh only applies to the next calculation
+		AttractionIndex attractionIndex = attractionCatalogue.getIndex();
+
+		for(VisitedLocation visitedLocation : newLocations.locations()) {
+			//only the attractions within the proximity buffer can be rewarded, the index skips the others
+			for(Attraction attraction : attractionIndex.getAttractionsWithin(visitedLocation.location, proximityBuffer)) {
+				if(!user.hasRewardForAttraction(attraction)) {
+					if(user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)))) {
+						rewardsGranted.increment();
 					}
 				}
 			}
-		}, executorService);
+		}
+		user.advanceRewardsWatermark(newLocations.endSequence());
+	}
+
+	/**
+	 * Looks up the reward points on the rewards executor, so that the lookups of several attractions
+	 * run in parallel and the caller is not blocked while RewardCentral is called.
+	 */
+	public CompletableFuture<Integer> getRewardPointsFuture(Attraction attraction, User user) {
+		return CompletableFuture.supplyAsync(() -> getRewardPoints(attraction, user), executorService);
 	}
 
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
 		return getDistance(attraction, location) > attractionProximityRange ? false : true;
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
-	}
-
 	//changed this from private to default to be able to call it from TourGuideService.class
 	int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return rewardPointsCache.getRewardPoints(attraction.attractionId, user.getUserId());
 	}
 	
 	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
-        return statuteMiles;
+		return DistanceHelper.getDistance(loc1, loc2);
 	}
 
 }
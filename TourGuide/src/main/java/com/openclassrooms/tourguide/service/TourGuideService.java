@@ -1,10 +1,26 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.AttractionDistance;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
+import com.openclassrooms.tourguide.cache.TripDealsCache.TripDealsKey;
+import com.openclassrooms.tourguide.concurrent.BoundedExecutor;
+import com.openclassrooms.tourguide.concurrent.ConcurrencyLimiter;
+import com.openclassrooms.tourguide.concurrent.ManagedBlocking;
+import com.openclassrooms.tourguide.concurrent.TaskExecutors;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.dto.RewardSummaryDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotPageDTO;
 import com.openclassrooms.tourguide.exceptions.InterruptedRewardCalculationException;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.HistoryRetention;
+import com.openclassrooms.tourguide.user.RewardTotals;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserRegistry;
 import com.openclassrooms.tourguide.user.UserReward;
 
 import java.sql.SQLOutput;
@@ -12,14 +28,21 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.converter.json.GsonBuilderUtils;
 import org.springframework.stereotype.Service;
 
@@ -32,19 +55,76 @@ import tripPricer.Provider;
 import tripPricer.TripPricer;
 
 @Service
-public class TourGuideService {
+public class TourGuideService implements AutoCloseable {
+	public static final int NEARBY_ATTRACTIONS_COUNT = 5;
+	public static final int DEFAULT_USER_PAGE_SIZE = 100;
+	public static final int MAX_USER_PAGE_SIZE = 1000;
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripPricer tripPricer;
 	public final Tracker tracker;
 	boolean testMode = true;
 
-	ExecutorService executorService = Executors.newFixedThreadPool(10);
+	//executor for the GpsUtil calls, platform thread pool or virtual threads, with a bounded queue
+	final BoundedExecutor executorService;
+	//work-stealing pool of the batch tracking
+	private final ForkJoinPool trackingBatchPool;
+	private final int trackingBatchSize;
+	private final int trackingBatchesInFlight;
+	private final ConcurrencyLimiter gpsLimiter;
+	private final TripDealsCache tripDealsCache;
+	private final Timer gpsTimer;
+	private final Timer trackingTimer;
+	private final Timer trackingBatchTimer;
+	private final Counter trackingErrors;
+	private final HistoryRetention historyRetention;
+	private final Thread shutdownHook;
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, new TripPricer(), new TourGuideProperties());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+							TourGuideProperties properties) {
+		this(gpsUtil, rewardsService, tripPricer, properties, new SimpleMeterRegistry());
+	}
+
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+							TourGuideProperties properties, MeterRegistry meterRegistry) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
+		this.tripPricer = tripPricer;
+
+		historyRetention = properties.getHistory().toRetention();
+
+		TourGuideProperties.Execution execution = properties.getExecution();
+		TourGuideProperties.QueueSettings trackingQueue = execution.getTrackingQueue();
+		executorService = TaskExecutors.newBoundedExecutor("tracking", execution.getMode(), execution.getTrackingPoolSize(),
+				trackingQueue.getCapacity(), trackingQueue.getPolicy(), trackingQueue.getBlockTimeout());
+		trackingBatchPool = TaskExecutors.newWorkStealingPool("tracking-batch", execution.getTrackingBatchParallelism(),
+				execution.getTrackingBatchMaxPoolSize());
+		trackingBatchSize = execution.getTrackingBatchSize();
+		trackingBatchesInFlight = execution.getTrackingBatchesInFlight();
+		gpsLimiter = new ConcurrencyLimiter(execution.getMaxConcurrentGpsCalls());
+
+		gpsTimer = TourGuideMetrics.externalCallTimer(meterRegistry, "gpsUtil", "getUserLocation");
+		trackingTimer = TourGuideMetrics.timer(meterRegistry, TourGuideMetrics.TRACKING,
+				"Location tracking of a user, rewards included");
+		trackingBatchTimer = TourGuideMetrics.timer(meterRegistry, TourGuideMetrics.TRACKING_BATCH,
+				"Location tracking of a batch of users, rewards included");
+		trackingErrors = Counter.builder(TourGuideMetrics.TRACKING_ERRORS)
+				.description("Failed location trackings").register(meterRegistry);
+		executorService.bindTo(meterRegistry);
+		new ExecutorServiceMetrics(trackingBatchPool, "tracking-batch", List.of()).bindTo(meterRegistry);
+
+		Timer tripPricerTimer = TourGuideMetrics.externalCallTimer(meterRegistry, "tripPricer", "getPrice");
+		TourGuideProperties.CacheSettings tripDealsCacheSettings = properties.getCache().getTripDeals();
+		tripDealsCache = new TripDealsCache(tripDealsCacheSettings.getMaximumSize(), tripDealsCacheSettings.getTimeToLive(),
+				key -> tripPricerTimer.record(() -> tripPricer.getPrice(tripPricerApiKey, key.userId(), key.numberOfAdults(),
+						key.numberOfChildren(), key.tripDuration(), key.cumulativeRewardPoints())));
+		CaffeineCacheMetrics.monitor(meterRegistry, tripDealsCache.getCache(), "tripDeals");
 
 		Locale.setDefault(Locale.US);
 
@@ -54,39 +134,149 @@ public class TourGuideService {
 			initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this);
-		addShutDownHook();
+		tracker = new Tracker(this, properties.getTracker(), meterRegistry);
+		shutdownHook = addShutDownHook();
+	}
+
+	/**
+	 * Stops the tracker and the executors, and removes the shutdown hook, which otherwise keeps the
+	 * service and its users reachable until the JVM exits. The rewards service is not closed.
+	 */
+	@Override
+	public void close() {
+		// the runs in flight still submit their next batches to the executors
+		tracker.stopTracking().join();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is already shutting down, the hook is running or about to run
+		}
+		executorService.shutdown();
+		trackingBatchPool.shutdown();
+	}
+
+	public BoundedExecutor getTrackingExecutor() {
+		return executorService;
+	}
+
+	public TripDealsCache getTripDealsCache() {
+		return tripDealsCache;
 	}
 
 	public List<UserReward> getUserRewards(User user) {
 		return user.getUserRewards();
 	}
 
+	public RewardSummaryDTO getRewardSummary(User user) {
+		RewardTotals rewardTotals = user.getRewardTotals();
+		return new RewardSummaryDTO(user.getUserId(), user.getUserName(), rewardTotals.rewardCount(),
+				rewardTotals.rewardPoints());
+	}
+
 	public CompletableFuture<VisitedLocation> getUserLocation(User user) {
-		return CompletableFuture.supplyAsync(() -> (!user.getVisitedLocations().isEmpty()) ? user.getLastVisitedLocation()
-				: trackUserLocation(user).join(), executorService);
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		//the returned future completes once the user is located and rewarded, without blocking any executor thread
+		return (lastVisitedLocation != null) ? CompletableFuture.completedFuture(lastVisitedLocation)
+				: trackUserLocation(user);
 	}
 
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRegistry.getUserByName(userName);
 	}
 
+	public User getUserById(UUID userId) {
+		return userRegistry.getUserById(userId);
+	}
+
+	/**
+	 * Returns a copy of all the users, prefer {@link #getUsers()} to iterate over them.
+	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().collect(Collectors.toList());
+		return new ArrayList<>(userRegistry.getUsers());
+	}
+
+	/**
+	 * Returns a live, weakly consistent view of the users that can be iterated without copying them.
+	 */
+	public Collection<User> getUsers() {
+		return userRegistry.getUsers();
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		if (userRegistry.addUserIfAbsent(user)) {
+			tracker.register(user);
+		}
+	}
+
+	/**
+	 * Returns the latest known location and rewards of the named users, in the order of the names.
+	 * Unknown names are skipped and no user is located. At most {@link #MAX_USER_PAGE_SIZE} names are
+	 * accepted, like a page.
+	 */
+	public List<UserSnapshotDTO> getUserSnapshots(Collection<String> userNames) {
+		if (userNames.size() > MAX_USER_PAGE_SIZE) {
+			throw new IllegalArgumentException("at most " + MAX_USER_PAGE_SIZE + " user names are accepted: "
+					+ userNames.size());
+		}
+		List<UserSnapshotDTO> snapshots = new ArrayList<>(userNames.size());
+		for (String userName : userNames) {
+			User user = userRegistry.getUserByName(userName);
+			if (user != null) {
+				snapshots.add(toUserSnapshotDTO(user));
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Returns a page of at most limit users in name order, starting after the cursor of the previous
+	 * page, or with the first user when the cursor is null. No user is located.
+	 */
+	public UserSnapshotPageDTO getUserSnapshotPage(String cursor, int limit) {
+		if (limit <= 0 || limit > MAX_USER_PAGE_SIZE) {
+			throw new IllegalArgumentException("limit must be between 1 and " + MAX_USER_PAGE_SIZE + ": " + limit);
+		}
+		//one more user is read to know whether there is a next page
+		List<User> users = userRegistry.getUsersAfter(cursor, limit + 1);
+		boolean hasNextPage = users.size() > limit;
+		List<UserSnapshotDTO> snapshots = new ArrayList<>(Math.min(limit, users.size()));
+		for (User user : users.subList(0, Math.min(limit, users.size()))) {
+			snapshots.add(toUserSnapshotDTO(user));
+		}
+		String nextCursor = hasNextPage ? snapshots.get(snapshots.size() - 1).getUserName() : null;
+		return new UserSnapshotPageDTO(snapshots, nextCursor);
+	}
+
+	/**
+	 * Returns the last known location of every located user, keyed by user id. Built from the
+	 * visited location histories, GpsUtil is not called.
+	 */
+	public Map<UUID, Location> getAllCurrentLocations() {
+		Map<UUID, Location> currentLocations = new HashMap<>(userRegistry.size() * 4 / 3 + 1);
+		for (User user : userRegistry.getUsers()) {
+			VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+			if (lastVisitedLocation != null) {
+				currentLocations.put(user.getUserId(), lastVisitedLocation.location);
+			}
 		}
+		return currentLocations;
+	}
+
+	private UserSnapshotDTO toUserSnapshotDTO(User user) {
+		return new UserSnapshotDTO(user.getUserId(), user.getUserName(), user.getLastVisitedLocation(), user.getUserRewards());
 	}
 
 	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
+		int cumulatativeRewardPoints = user.getRewardTotals().rewardPoints();
+		UserPreferences userPreferences = user.getUserPreferences();
+		TripDealsKey key = new TripDealsKey(user.getUserId(), userPreferences.getNumberOfAdults(),
+				userPreferences.getNumberOfChildren(), userPreferences.getTripDuration(), cumulatativeRewardPoints);
+
+		//TripPricer is only called when the pricing inputs changed or the cached deals expired
+		List<Provider> providers = tripDealsCache.getTripDeals(key);
+		if (user.getTripDeals() != providers) {
+			user.setTripDeals(providers);
+		}
 		return providers;
 	}
 
@@ -105,93 +295,165 @@ public class TourGuideService {
 
 
 	public  CompletableFuture<VisitedLocation> trackUserLocation(User user) {
-		return CompletableFuture.supplyAsync(() -> {
-			VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-			user.addToVisitedLocations(visitedLocation);
-			try {
-				rewardsService.calculateRewardsFuture(user).get();
-
-				//warp check exception into uncheck exception
-			} catch (InterruptedException e) {
-				throw new InterruptedRewardCalculationException("Error calculating rewards for user", e);
-			} catch (ExecutionException e) {
-				throw new InterruptedRewardCalculationException("Error calculating rewards for user", e);
-			}
-			return visitedLocation;
-		},executorService);
+		Timer.Sample sample = Timer.start();
+		return CompletableFuture.supplyAsync(() -> locateUser(user), executorService)
+				//chain the rewards instead of waiting for them, no tracking thread is blocked on the rewards executor
+				.thenCompose(visitedLocation -> rewardsService.calculateRewardsFuture(user)
+						.handle((result, e) -> {
+							if (e != null) {
+								throw new InterruptedRewardCalculationException("Error calculating rewards for user", e);
+							}
+							return visitedLocation;
+						}))
+				.whenComplete((visitedLocation, e) -> {
+					sample.stop(trackingTimer);
+					if (e != null) {
+						trackingErrors.increment();
+					}
+				});
 	}
 
+	/**
+	 * Tracks the users in batches of the configured size, see {@link #trackUsersInBatches(Collection, int, int)}.
+	 */
+	public CompletableFuture<Void> trackUsersInBatches(Collection<User> users) {
+		return trackUsersInBatches(users, trackingBatchSize, trackingBatchesInFlight);
+	}
 
 	/**
-	 * This method retrieves a SortedMap of attractions and their distance from VisitedLocation
-	 *
-	 * @param visitedLocation the visited location to find nearby attractions for.
-	 * @return a SortedMap of the five closest attractions.
+	 * Tracks the users in batches. The locations of the users of a batch are fetched concurrently on a
+	 * work-stealing pool as one unit of work, then the rewards of the whole batch are queued as one
+	 * reward batch. At most batchesInFlight batches fetch locations at the same time, the next batch
+	 * starts as soon as one of them has applied its locations.
 	 *
-	"	 * @author Ivano P
+	 * @return a future completing when every user is located and rewarded
 	 */
-	public CompletableFuture<SortedMap<Double, Attraction>> getAttractionsDistanceFromLocationFuture(VisitedLocation visitedLocation){
-		return CompletableFuture.supplyAsync(() -> {
-			//map to hold distance from visitedLocation to attraction
-			TreeMap<Double, Attraction> attractionByDistance= new TreeMap<>();
-
-			//Loop through list of attractions and map them with distances from visited location
-			for(Attraction attraction : gpsUtil.getAttractions()){
-				attractionByDistance.put(rewardsService.getDistance(visitedLocation.location, attraction), attraction);
-			}
-			return attractionByDistance;
+	public CompletableFuture<Void> trackUsersInBatches(Collection<User> users, int batchSize, int batchesInFlight) {
+		return trackUsersInBatches(users, batchSize, batchesInFlight, batch -> {});
+	}
+
+	/**
+	 * See {@link #trackUsersInBatches(Collection, int, int)}, the listener is called with the users of
+	 * each batch once they are located and rewarded.
+	 */
+	public CompletableFuture<Void> trackUsersInBatches(Collection<User> users, int batchSize, int batchesInFlight,
+													   Consumer<List<User>> batchListener) {
+		if (batchesInFlight <= 0) {
+			throw new IllegalArgumentException("batchesInFlight must be positive: " + batchesInFlight);
+		}
+		UserBatches userBatches = new UserBatches(users, batchSize);
+		if (userBatches.batchCount() == 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		AtomicInteger nextBatch = new AtomicInteger();
+		AtomicInteger rewardedBatches = new AtomicInteger();
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+		for (int i = 0; i < Math.min(batchesInFlight, userBatches.batchCount()); i++) {
+			trackNextBatch(userBatches, nextBatch, rewardedBatches, completion, batchListener);
+		}
+		return completion;
+	}
 
-		}, executorService);
+	private void trackNextBatch(UserBatches userBatches, AtomicInteger nextBatch, AtomicInteger rewardedBatches,
+								CompletableFuture<Void> completion, Consumer<List<User>> batchListener) {
+		int batchIndex = nextBatch.getAndIncrement();
+		if (batchIndex >= userBatches.batchCount() || completion.isDone()) {
+			return;
+		}
+		List<User> batch = userBatches.batch(batchIndex);
+		Timer.Sample sample = Timer.start();
+
+		userBatches.runAsync(batchIndex, this::locateUserInBatch, trackingBatchPool)
+				.thenCompose(located -> {
+					//the locations of this batch are applied, its slot goes to the next batch while its rewards are calculated
+					trackNextBatch(userBatches, nextBatch, rewardedBatches, completion, batchListener);
+					return rewardsService.calculateRewardsInBatches(batch, batch.size(), progress -> {});
+				})
+				.whenComplete((result, e) -> {
+					sample.stop(trackingBatchTimer);
+					if (e != null) {
+						completion.completeExceptionally(new InterruptedRewardCalculationException("Error calculating rewards for a batch of users", e));
+						return;
+					}
+					batchListener.accept(batch);
+					if (rewardedBatches.incrementAndGet() == userBatches.batchCount()) {
+						completion.complete(null);
+					}
+				});
+	}
+
+	private void locateUserInBatch(User user) {
+		try {
+			//managed so that a batch worker waiting on GpsUtil is replaced by a spare worker
+			ManagedBlocking.call(() -> locateUser(user));
+		} catch (RuntimeException e) {
+			//one user failing must not drop the rest of the batch, the user is located again on the next cycle
+			trackingErrors.increment();
+			logger.error("Error locating user " + user.getUserName(), e);
+		}
+	}
+
+	private VisitedLocation locateUser(User user) {
+		VisitedLocation visitedLocation = gpsLimiter.call(() -> gpsTimer.record(() -> gpsUtil.getUserLocation(user.getUserId())));
+		user.addToVisitedLocations(visitedLocation);
+		return visitedLocation;
 	}
 
+
 	/**
-	 * This method takes a sorted map of attractions sorted by distance, a user, and a visited location.
-	 * It then finds the five closest attractions to the visited location and returns them as a list
-	 * of NearbyAttractionDTO objects.
-	 *
-	 * @param distanceFromUserAndAttraction A sorted map where the keys are distances to attractions and the values are the attractions themselves.
-	 * @param user The User object for whom we are finding the nearby attractions.
-	 * @param visitedLocation The VisitedLocation object representing the user's current location.
-	 * @return A list of the five closest attractions to the user's location, represented as NearbyAttractionDTO objects.
+	 * Returns the attractions closest to the current location of the user, see
+	 * {@link #getNearbyAttractionsFuture(User, VisitedLocation, int)}. The user is only located when
+	 * no location is known yet, and no thread is blocked while GpsUtil or RewardCentral are called.
+	 */
+	public CompletableFuture<List<NearbyAttractionDTO>> getNearbyAttractionsFuture(User user, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("limit must be positive: " + limit);
+		}
+		return getUserLocation(user).thenCompose(visitedLocation -> getNearbyAttractionsFuture(user, visitedLocation, limit));
+	}
+
+	/**
+	 * Returns the attractions closest to the visited location as NearbyAttractionDTO objects, sorted by
+	 * increasing distance, with the reward points the user would get for each of them. The reward
+	 * points of the attractions are looked up in parallel.
 	 *
-	 * @author Ivano P
+	 * @param limit the number of attractions returned, attractions at the same distance are all counted
 	 */
-	public CompletableFuture<List<NearbyAttractionDTO>> getNearByAttractionsFuture(SortedMap<Double, Attraction> distanceFromUserAndAttraction,
-																				   User user,
-																					VisitedLocation visitedLocation){
-		return CompletableFuture.supplyAsync(() -> {
-			List<NearbyAttractionDTO> fiveClosestAttractions = new ArrayList<>();
-
-			int counter = 0;
-			for (var entry : distanceFromUserAndAttraction.entrySet()) {
-				// Stop after collecting data for the closest five attractions
-				if (counter >= 5) {
-					break;
-				}
-				Attraction attraction = entry.getValue();
-				Double distanceFromVisitedLocation = entry.getKey();
-				int rewardPoints = rewardsService.getRewardPoints(attraction, user);
-				String attractionLatLong = "Attraction's latitude: " + String.valueOf(attraction.latitude) + ", longitude: " +
-						String.valueOf(attraction.longitude);
-				String userLatLong = "User's latitude: " + String.valueOf(visitedLocation.location.latitude) +
-						", longitude: " + String.valueOf(visitedLocation.location.longitude);
-
-				fiveClosestAttractions.add(new NearbyAttractionDTO(attraction.attractionName, attractionLatLong,
-						userLatLong, distanceFromVisitedLocation, rewardPoints));
-				counter ++;
-			}
-			return fiveClosestAttractions;
+	public CompletableFuture<List<NearbyAttractionDTO>> getNearbyAttractionsFuture(User user, VisitedLocation visitedLocation,
+																				   int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("limit must be positive: " + limit);
+		}
+		//the index lookup is cheap, only the reward points lookups go to the rewards executor
+		List<AttractionDistance> nearest = rewardsService.getAttractionIndex()
+				.getNearestAttractions(visitedLocation.location, limit);
+		List<CompletableFuture<NearbyAttractionDTO>> nearbyAttractions = new ArrayList<>(nearest.size());
+		for (AttractionDistance attractionDistance : nearest) {
+			Attraction attraction = attractionDistance.attraction();
+			nearbyAttractions.add(rewardsService.getRewardPointsFuture(attraction, user).thenApply(rewardPoints ->
+					toNearbyAttractionDTO(attraction, attractionDistance.distance(), rewardPoints, visitedLocation)));
+		}
+		return CompletableFuture.allOf(nearbyAttractions.toArray(new CompletableFuture[0]))
+				.thenApply(done -> nearbyAttractions.stream().map(CompletableFuture::join).toList());
+	}
+
+	private NearbyAttractionDTO toNearbyAttractionDTO(Attraction attraction, double distanceFromVisitedLocation, int rewardPoints,
+													  VisitedLocation visitedLocation) {
+		String attractionLatLong = "Attraction's latitude: " + String.valueOf(attraction.latitude) + ", longitude: " +
+				String.valueOf(attraction.longitude);
+		String userLatLong = "User's latitude: " + String.valueOf(visitedLocation.location.latitude) +
+				", longitude: " + String.valueOf(visitedLocation.location.longitude);
 
-		}, executorService);
+		return new NearbyAttractionDTO(attraction.attractionName, attractionLatLong, userLatLong,
+				distanceFromVisitedLocation, rewardPoints);
 	}
 
 
-	private void addShutDownHook() {
-		Runtime.getRuntime().addShutdownHook(new Thread() {
-			public void run() {
-				tracker.stopTracking();
-			}
-		});
+	private Thread addShutDownHook() {
+		Thread hook = new Thread(tracker::stopTracking, "tracker-shutdown");
+		Runtime.getRuntime().addShutdownHook(hook);
+		return hook;
 	}
 
 	/**********************************************************************************
@@ -202,17 +464,17 @@ public class TourGuideService {
 	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	private final UserRegistry userRegistry = new UserRegistry();
 
 	private void initializeInternalUsers() {
 		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
 			String userName = "internalUser" + i;
 			String phone = "000";
 			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
+			User user = new User(UUID.randomUUID(), userName, phone, email, historyRetention);
 			generateUserLocationHistory(user);
 
-			internalUserMap.put(userName, user);
+			userRegistry.addUserIfAbsent(user);
 		});
 		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
 	}
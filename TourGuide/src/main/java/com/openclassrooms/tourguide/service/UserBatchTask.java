@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Applies an action to a range of users on a fork-join pool. The range is split in halves down
+ * to single users, so that idle workers steal the remaining users of a batch and a user blocked
+ * on an external service only holds back its own action.
+ */
+class UserBatchTask extends RecursiveAction {
+	private final List<User> users;
+	private final int from;
+	private final int to;
+	private final Consumer<User> action;
+
+	UserBatchTask(List<User> users, int from, int to, Consumer<User> action) {
+		this.users = users;
+		this.from = from;
+		this.to = to;
+		this.action = action;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from == 1) {
+			action.accept(users.get(from));
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new UserBatchTask(users, from, middle, action), new UserBatchTask(users, middle, to, action));
+	}
+}
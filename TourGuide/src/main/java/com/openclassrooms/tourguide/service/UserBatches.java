@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Snapshot of users split into consecutive batches of a fixed size, each batch being processed as
+ * one {@link UserBatchTask}. The snapshot is taken once, so that the batches are not affected by
+ * users added in the meantime.
+ */
+class UserBatches {
+	private final List<User> users;
+	private final int batchSize;
+	private final int batchCount;
+
+	UserBatches(Collection<User> users, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+		}
+		this.users = List.copyOf(users);
+		this.batchSize = batchSize;
+		this.batchCount = (this.users.size() + batchSize - 1) / batchSize;
+	}
+
+	int userCount() {
+		return users.size();
+	}
+
+	int batchCount() {
+		return batchCount;
+	}
+
+	List<User> batch(int batchIndex) {
+		return users.subList(batchIndex * batchSize, Math.min((batchIndex + 1) * batchSize, users.size()));
+	}
+
+	/**
+	 * Applies the action to every user of the batch on the pool.
+	 */
+	CompletableFuture<Void> runAsync(int batchIndex, Consumer<User> action, ForkJoinPool pool) {
+		int from = batchIndex * batchSize;
+		int to = Math.min(from + batchSize, users.size());
+		return CompletableFuture.runAsync(() -> new UserBatchTask(users, from, to, action).invoke(), pool);
+	}
+}
@@ -0,0 +1,106 @@
+package com.openclassrooms.tourguide.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
+import com.openclassrooms.tourguide.user.RewardTotals;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Writes every user as newline-delimited JSON, one object per line, while iterating over the
+ * user registry. Nothing is collected beforehand, so memory use does not grow with the number of
+ * users. The first failed write, usually a client closing the connection, stops the export.
+ */
+@Service
+public class UserExportService {
+	public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+	private final TourGuideService tourGuideService;
+	private final ObjectMapper objectMapper;
+	private final Duration timeout;
+
+	public UserExportService(TourGuideService tourGuideService, ObjectMapper objectMapper) {
+		this(tourGuideService, objectMapper, new TourGuideProperties());
+	}
+
+	@Autowired
+	public UserExportService(TourGuideService tourGuideService, ObjectMapper objectMapper, TourGuideProperties properties) {
+		this.tourGuideService = tourGuideService;
+		this.objectMapper = objectMapper;
+		this.timeout = properties.getExport().getTimeout();
+	}
+
+	/**
+	 * Time allowed to an export request, instead of the default asynchronous request timeout.
+	 */
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Writes the last known location of every located user.
+	 *
+	 * @return the number of users written
+	 */
+	public int writeLocations(OutputStream out) throws IOException {
+		int count = 0;
+		try (JsonGenerator generator = createGenerator(out)) {
+			for (User user : tourGuideService.getUsers()) {
+				VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+				if (lastVisitedLocation == null) {
+					continue;
+				}
+				generator.writeStartObject();
+				generator.writeStringField("userId", user.getUserId().toString());
+				generator.writeStringField("userName", user.getUserName());
+				generator.writeNumberField("latitude", lastVisitedLocation.location.latitude);
+				generator.writeNumberField("longitude", lastVisitedLocation.location.longitude);
+				generator.writeNumberField("timeVisited", lastVisitedLocation.timeVisited.getTime());
+				generator.writeEndObject();
+				generator.writeRaw('\n');
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the number of rewards and the reward points of every user.
+	 *
+	 * @return the number of users written
+	 */
+	public int writeRewards(OutputStream out) throws IOException {
+		int count = 0;
+		try (JsonGenerator generator = createGenerator(out)) {
+			for (User user : tourGuideService.getUsers()) {
+				RewardTotals rewardTotals = user.getRewardTotals();
+				generator.writeStartObject();
+				generator.writeStringField("userId", user.getUserId().toString());
+				generator.writeStringField("userName", user.getUserName());
+				generator.writeNumberField("rewardCount", rewardTotals.rewardCount());
+				generator.writeNumberField("rewardPoints", rewardTotals.rewardPoints());
+				generator.writeEndObject();
+				generator.writeRaw('\n');
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// the generator buffers the lines and writes them to the stream as its buffer fills up, the stream stays open.
+	// the lines are separated by the explicit newlines only, not by the default root value separator, a space
+	private JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return objectMapper.getFactory().createGenerator(out)
+				.setRootValueSeparator(null)
+				.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+}
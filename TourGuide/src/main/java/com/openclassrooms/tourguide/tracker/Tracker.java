@@ -1,61 +1,216 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.time.StopWatch;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
-public class Tracker extends Thread {
+/**
+ * Tracks the location of every user once per polling interval. The users are split into shards
+ * by user id when they are registered, and the shards are scheduled at a fixed rate with their start times spread over the
+ * interval, so GpsUtil receives a steady load instead of one burst per interval. A shard whose
+ * previous run is still in flight skips its turn instead of piling up work. The duration, lag and
+ * skipped runs of every shard are published as meters tagged with the shard index.
+ */
+public class Tracker {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "tracker");
+		thread.setDaemon(true);
+		return thread;
+	});
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final Duration pollingInterval;
+	private final Shard[] shards;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, new TourGuideProperties.Tracking());
+	}
+
+	public Tracker(TourGuideService tourGuideService, TourGuideProperties.Tracking settings) {
+		this(tourGuideService, settings, new SimpleMeterRegistry());
+	}
+
+	public Tracker(TourGuideService tourGuideService, TourGuideProperties.Tracking settings, MeterRegistry meterRegistry) {
 		this.tourGuideService = tourGuideService;
+		this.pollingInterval = settings.getPollingInterval();
+		this.shards = new Shard[Math.max(1, settings.getShardCount())];
 
-		executorService.submit(this);
+		long intervalMillis = pollingInterval.toMillis();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new Shard(i, now + intervalMillis * i / shards.length, meterRegistry);
+		}
+		for (User user : tourGuideService.getUsers()) {
+			register(user);
+		}
+		for (int i = 0; i < shards.length; i++) {
+			long initialDelay = intervalMillis * i / shards.length;
+			scheduler.scheduleAtFixedRate(shards[i]::run, initialDelay, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+		logger.debug("Tracking " + shards.length + " shards every " + pollingInterval);
+	}
+
+	/**
+	 * Adds a user to its shard, the user is tracked from the next run of the shard.
+	 */
+	public void register(User user) {
+		shards[shardOf(user.getUserId())].add(user);
 	}
 
 	/**
-	 * Assures to shut down the Tracker thread
+	 * Assures to shut down the Tracker thread. No run starts after this call, and a run already
+	 * started has been handed to the executors when it returns.
+	 *
+	 * @return a future completing when the runs in flight are done, failed runs included
 	 */
-	public void stopTracking() {
-		stop = true;
-		executorService.shutdownNow();
-	}
-
-	@Override
-	public void run() {
-		StopWatch stopWatch = new StopWatch();
-		while (true) {
-			if (Thread.currentThread().isInterrupted() || stop) {
-				logger.debug("Tracker stopping");
-				break;
+	public CompletableFuture<Void> stopTracking() {
+		// the periodic runs are cancelled, a run in progress is not interrupted
+		scheduler.shutdown();
+		try {
+			if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.warn("Tracker thread did not terminate");
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		CompletableFuture<?>[] runs = new CompletableFuture<?>[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			runs[i] = shards[i].currentRun.exceptionally(e -> null);
+		}
+		return CompletableFuture.allOf(runs);
+	}
+
+	/**
+	 * Starts tracking the location of every user, once, in batches.
+	 *
+	 * @return a future completing when every user is located and rewarded
+	 */
+	public CompletableFuture<Void> trackAllUsers() {
+		return tourGuideService.trackUsersInBatches(tourGuideService.getUsers());
+	}
 
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
-			users.forEach(u -> tourGuideService.trackUserLocation(u));
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public int shardOf(UUID userId) {
+		return Math.floorMod(userId.hashCode(), shards.length);
+	}
+
+	/**
+	 * Returns the current status of every shard.
+	 */
+	public List<ShardStatus> getShardStatuses() {
+		long now = System.currentTimeMillis();
+		List<ShardStatus> statuses = new ArrayList<>(shards.length);
+		for (Shard shard : shards) {
+			statuses.add(shard.status(now));
+		}
+		return statuses;
+	}
+
+	/**
+	 * Status of a shard.
+	 *
+	 * @param shard index of the shard
+	 * @param userCount number of users tracked by the last run
+	 * @param inFlight whether a run is in progress
+	 * @param lastRunDuration duration of the last completed run, zero before the first one
+	 * @param lag how long the users of the shard have waited for a location beyond the polling interval
+	 * @param skippedRuns runs skipped because the previous run was still in flight
+	 */
+	public record ShardStatus(int shard, int userCount, boolean inFlight, Duration lastRunDuration, Duration lag,
+							  long skippedRuns) {
+	}
+
+	private class Shard {
+		private final int index;
+		private final ConcurrentLinkedQueue<User> users = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger registeredUsers = new AtomicInteger();
+		private volatile CompletableFuture<Void> currentRun = CompletableFuture.completedFuture(null);
+		private volatile int userCount;
+		// start time of the last completed run, the users of the shard were all located after it
+		private volatile long lastCompletedRunStart;
+		private volatile long lastRunDuration;
+		private volatile long skippedRuns;
+		private final Timer runTimer;
+
+		private Shard(int index, long firstRun, MeterRegistry meterRegistry) {
+			this.index = index;
+			// no lag is reported before the first run is due
+			this.lastCompletedRunStart = firstRun - pollingInterval.toMillis();
+
+			String shard = String.valueOf(index);
+			this.runTimer = TourGuideMetrics.timer(meterRegistry, TourGuideMetrics.TRACKER_SHARD_DURATION,
+					"Runs of a tracker shard", "shard", shard);
+			Gauge.builder(TourGuideMetrics.TRACKER_SHARD_LAG, this, s -> s.lagMillis(System.currentTimeMillis()) / 1000.0)
+					.description("Time the users of the shard have waited for a location beyond the polling interval")
+					.baseUnit("seconds").tag("shard", shard).register(meterRegistry);
+			FunctionCounter.builder(TourGuideMetrics.TRACKER_SHARD_SKIPPED, this, s -> s.skippedRuns)
+					.description("Runs skipped because the previous run was still in flight")
+					.tag("shard", shard).register(meterRegistry);
+		}
+
+		private void add(User user) {
+			users.add(user);
+			registeredUsers.incrementAndGet();
+		}
+
+		// runs on the single scheduler thread, the fields are only written here and by the run completion
+		private void run() {
+			if (!currentRun.isDone()) {
+				skippedRuns++;
+				logger.warn("Tracker shard " + index + " is still running, skipping this run");
+				return;
+			}
+			userCount = registeredUsers.get();
+			long start = System.currentTimeMillis();
+			logger.debug("Tracker shard " + index + ": tracking " + userCount + " users");
 			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
-			} catch (InterruptedException e) {
-				break;
+				currentRun = tourGuideService.trackUsersInBatches(users).whenComplete((result, e) -> {
+					lastRunDuration = System.currentTimeMillis() - start;
+					runTimer.record(Duration.ofMillis(lastRunDuration));
+					if (e != null) {
+						logger.error("Tracker shard " + index + " failed", e);
+					} else {
+						lastCompletedRunStart = start;
+						logger.debug("Tracker shard " + index + ": " + TimeUnit.MILLISECONDS.toSeconds(lastRunDuration)
+								+ " seconds elapsed");
+					}
+				});
+			} catch (RuntimeException e) {
+				// an exception escaping the scheduled task would cancel every next run of the shard
+				logger.error("Tracker shard " + index + " failed to start", e);
 			}
 		}
 
+		private long lagMillis(long now) {
+			return Math.max(0, now - lastCompletedRunStart - pollingInterval.toMillis());
+		}
+
+		private ShardStatus status(long now) {
+			return new ShardStatus(index, userCount, !currentRun.isDone(), Duration.ofMillis(lastRunDuration),
+					Duration.ofMillis(lagMillis(now)), skippedRuns);
+		}
 	}
 }
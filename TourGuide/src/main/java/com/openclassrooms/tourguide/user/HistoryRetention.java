@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.user;
+
+import java.time.Duration;
+
+/**
+ * How much of the visited location history of a user is kept.
+ *
+ * @param recentCapacity number of most recent locations always kept, whatever their age, at least 1
+ * @param maxArchived maximum number of older locations kept
+ * @param archiveRetention age after which the older locations are dropped
+ */
+public record HistoryRetention(int recentCapacity, int maxArchived, Duration archiveRetention) {
+	// 100 recent locations, and 1 day of locations tracked every 5 minutes: about 9 KB per user
+	public static final HistoryRetention DEFAULT = new HistoryRetention(100, 288, Duration.ofDays(1));
+
+	public HistoryRetention {
+		if (recentCapacity < 1 || maxArchived < 0) {
+			throw new IllegalArgumentException("recentCapacity must be positive and maxArchived not negative: "
+					+ recentCapacity + ", " + maxArchived);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.tourguide.user;
+
+/**
+ * Number of rewards of a user and the sum of their reward points, immutable so that both are
+ * always read together.
+ */
+public record RewardTotals(int rewardCount, int rewardPoints) {
+	public static final RewardTotals EMPTY = new RewardTotals(0, 0);
+
+	public RewardTotals add(int points) {
+		return new RewardTotals(rewardCount + 1, rewardPoints + points);
+	}
+}
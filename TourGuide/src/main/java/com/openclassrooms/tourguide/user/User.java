@@ -1,10 +1,17 @@
 package com.openclassrooms.tourguide.user;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
@@ -13,16 +20,31 @@ public class User {
 	private final String userName;
 	private String phoneNumber;
 	private String emailAddress;
-	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private List<UserReward> userRewards = new ArrayList<>();
-	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile Date latestLocationTimestamp;
+	// appended by the tracker and read by the rewards pool, guarded by this user's own lock
+	private final VisitedLocationHistory visitedLocations;
+	private final Object visitedLocationsLock = new Object();
+	// rewards are rarely added and often read, readers iterate over an immutable snapshot
+	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	// ids of the attractions in userRewards, for constant time "already rewarded" checks
+	private final Set<UUID> rewardedAttractionIds = ConcurrentHashMap.newKeySet();
+	// running totals of userRewards, so that they are not summed on every read
+	private final AtomicReference<RewardTotals> rewardTotals = new AtomicReference<>(RewardTotals.EMPTY);
+	private volatile UserPreferences userPreferences = new UserPreferences();
+	private volatile List<Provider> tripDeals = new ArrayList<>();
+	// sequence number of the first visited location not evaluated for rewards yet
+	private final AtomicLong rewardsWatermark = new AtomicLong();
+
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, HistoryRetention.DEFAULT);
+	}
+
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, HistoryRetention historyRetention) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new VisitedLocationHistory(userId, historyRetention);
 	}
 	
 	public UUID getUserId() {
@@ -58,25 +80,94 @@ public class User {
 	}
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		synchronized (visitedLocationsLock) {
+			visitedLocations.add(visitedLocation);
+		}
 	}
 	
+	/**
+	 * Returns a snapshot of the retained visited locations, later visits are not reflected in it.
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		synchronized (visitedLocationsLock) {
+			return visitedLocations.toList();
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the retained visited locations from the given sequence number,
+	 * see {@link VisitedLocationHistory}.
+	 */
+	public VisitedLocationHistory.Slice getVisitedLocationsFrom(long sequence) {
+		synchronized (visitedLocationsLock) {
+			return visitedLocations.from(sequence);
+		}
+	}
+
+	/**
+	 * Number of retained visited locations, older ones are dropped by the history retention.
+	 */
+	public int getVisitedLocationCount() {
+		synchronized (visitedLocationsLock) {
+			return visitedLocations.size();
+		}
+	}
+
+	/**
+	 * Number of locations ever visited, also the sequence number of the next one.
+	 */
+	public long getVisitedLocationSequence() {
+		synchronized (visitedLocationsLock) {
+			return visitedLocations.nextSequence();
+		}
 	}
 	
 	public void clearVisitedLocations() {
-		visitedLocations.clear();
+		synchronized (visitedLocationsLock) {
+			visitedLocations.clear();
+		}
 	}
-	
-	public void addUserReward(UserReward userReward) {
-		if(userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
+
+	public long getRewardsWatermark() {
+		return rewardsWatermark.get();
+	}
+
+	/**
+	 * Marks the visited locations before the given sequence number as evaluated for rewards.
+	 * The watermark never moves backward, so a slower concurrent evaluation cannot undo a faster one.
+	 */
+	public void advanceRewardsWatermark(long sequence) {
+		rewardsWatermark.accumulateAndGet(sequence, Math::max);
+	}
+	
+	/**
+	 * Adds the reward and its points to the reward totals, the points of the reward must not be
+	 * changed afterwards.
+	 *
+	 * @return false when the user already had a reward for the attraction
+	 */
+	public boolean addUserReward(UserReward userReward) {
+		if(rewardedAttractionIds.add(userReward.attraction.attractionId)) {
 			userRewards.add(userReward);
+			rewardTotals.updateAndGet(totals -> totals.add(userReward.getRewardPoints()));
+			return true;
 		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of rewards and their cumulative points, without going through the rewards.
+	 */
+	public RewardTotals getRewardTotals() {
+		return rewardTotals.get();
+	}
+
+	public boolean hasRewardForAttraction(Attraction attraction) {
+		return rewardedAttractionIds.contains(attraction.attractionId);
 	}
 	
 	public List<UserReward> getUserRewards() {
-		return userRewards;
+		return Collections.unmodifiableList(userRewards);
 	}
 	
 	public UserPreferences getUserPreferences() {
@@ -87,8 +178,13 @@ public class User {
 		this.userPreferences = userPreferences;
 	}
 
+	/**
+	 * Returns the most recent visited location, or null if the user has not been located yet.
+	 */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		synchronized (visitedLocationsLock) {
+			return visitedLocations.last();
+		}
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
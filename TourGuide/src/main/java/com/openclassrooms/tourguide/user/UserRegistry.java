@@ -0,0 +1,73 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In memory store of the users, safe for concurrent use. Users are indexed by name and by id.
+ * The names are kept sorted, so that the users can be paged through by name.
+ */
+public class UserRegistry {
+	private final NavigableMap<String, User> usersByName = new ConcurrentSkipListMap<>();
+	private final Map<UUID, User> usersById = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds the user unless a user with the same name is already registered.
+	 *
+	 * @return true if the user was added
+	 */
+	public boolean addUserIfAbsent(User user) {
+		if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+			return false;
+		}
+		usersById.put(user.getUserId(), user);
+		return true;
+	}
+
+	public User getUserByName(String userName) {
+		return usersByName.get(userName);
+	}
+
+	public User getUserById(UUID userId) {
+		return usersById.get(userId);
+	}
+
+	/**
+	 * Returns a read-only live view of the users. Iterating over it does not copy the users and
+	 * is weakly consistent: it never throws ConcurrentModificationException and may or may not
+	 * reflect users added during the iteration.
+	 */
+	public Collection<User> getUsers() {
+		return Collections.unmodifiableCollection(usersByName.values());
+	}
+
+	/**
+	 * Returns at most limit users, in name order, whose name comes after the given one. Paging with
+	 * the name of the last user returned is not affected by users added in the meantime.
+	 *
+	 * @param afterUserName name following which users are returned, null to start with the first user
+	 */
+	public List<User> getUsersAfter(String afterUserName, int limit) {
+		Collection<User> users = afterUserName == null ? usersByName.values()
+				: usersByName.tailMap(afterUserName, false).values();
+		List<User> page = new ArrayList<>(Math.min(limit, size()));
+		for (User user : users) {
+			if (page.size() == limit) {
+				break;
+			}
+			page.add(user);
+		}
+		return page;
+	}
+
+	public int size() {
+		return usersByName.size();
+	}
+}
@@ -0,0 +1,158 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Bounded visited location history of a user, stored as primitive latitude, longitude and time
+ * columns: a point costs 24 bytes instead of a VisitedLocation, a Location and a Date. The
+ * VisitedLocation objects are only created when the history is read, except for the last one,
+ * which is kept as is for the frequent current location lookups.
+ *
+ * The most recent locations are always kept; older ones are dropped once there are more than
+ * maxArchived of them or they are older than the retention.
+ *
+ * Every location gets a sequence number, the number of locations added before it, so that a
+ * position in the history stays valid while older locations are dropped.
+ *
+ * Not thread safe, {@link User} guards it with its own lock.
+ */
+public class VisitedLocationHistory {
+	private static final double[] NO_COORDINATES = new double[0];
+	private static final long[] NO_TIMES = new long[0];
+
+	private final UUID userId;
+	private final HistoryRetention retention;
+	private final int maxSize;
+
+	// circular columns, in the order the locations were added
+	private double[] latitudes = NO_COORDINATES;
+	private double[] longitudes = NO_COORDINATES;
+	private long[] times = NO_TIMES;
+	private int start;
+	private int size;
+
+	private VisitedLocation last;
+	private long nextSequence;
+
+	public VisitedLocationHistory(UUID userId, HistoryRetention retention) {
+		this.userId = userId;
+		this.retention = retention;
+		this.maxSize = retention.recentCapacity() + retention.maxArchived();
+	}
+
+	public void add(VisitedLocation visitedLocation) {
+		if (size == maxSize) {
+			dropOldest();
+		}
+		if (size == times.length) {
+			grow();
+		}
+		int position = (start + size) % times.length;
+		latitudes[position] = visitedLocation.location.latitude;
+		longitudes[position] = visitedLocation.location.longitude;
+		times[position] = visitedLocation.timeVisited.getTime();
+		size++;
+		last = visitedLocation;
+		nextSequence++;
+		dropExpired(System.currentTimeMillis() - retention.archiveRetention().toMillis());
+	}
+
+	/**
+	 * Number of locations kept.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of locations kept beyond the most recent ones, subject to the retention.
+	 */
+	public int archivedSize() {
+		return Math.max(0, size - retention.recentCapacity());
+	}
+
+	/**
+	 * Sequence number of the next location added, also the number of locations ever added.
+	 */
+	public long nextSequence() {
+		return nextSequence;
+	}
+
+	public VisitedLocation last() {
+		return last;
+	}
+
+	public List<VisitedLocation> toList() {
+		return from(0).locations();
+	}
+
+	/**
+	 * Returns the locations kept whose sequence number is greater or equal to the given one.
+	 */
+	public Slice from(long sequence) {
+		long firstSequence = nextSequence - size;
+		int offset = (int) Math.min(size, Math.max(0, sequence - firstSequence));
+		List<VisitedLocation> locations = new ArrayList<>(size - offset);
+		for (int i = offset; i < size - 1; i++) {
+			int position = (start + i) % times.length;
+			locations.add(new VisitedLocation(userId, new Location(latitudes[position], longitudes[position]),
+					new Date(times[position])));
+		}
+		if (offset < size) {
+			locations.add(last);
+		}
+		return new Slice(List.copyOf(locations), nextSequence);
+	}
+
+	/**
+	 * Drops every location, sequence numbers keep increasing.
+	 */
+	public void clear() {
+		start = 0;
+		size = 0;
+		last = null;
+	}
+
+	// the columns are in the order the locations were added, dropping stops at the first recent enough location
+	private void dropExpired(long oldestKeptTime) {
+		while (size > retention.recentCapacity() && times[start] < oldestKeptTime) {
+			dropOldest();
+		}
+	}
+
+	private void dropOldest() {
+		start = (start + 1) % times.length;
+		size--;
+	}
+
+	private void grow() {
+		int capacity = (int) Math.min(maxSize, Math.max(8L, times.length + (times.length >> 1)));
+		double[] newLatitudes = new double[capacity];
+		double[] newLongitudes = new double[capacity];
+		long[] newTimes = new long[capacity];
+		for (int i = 0; i < size; i++) {
+			int position = (start + i) % times.length;
+			newLatitudes[i] = latitudes[position];
+			newLongitudes[i] = longitudes[position];
+			newTimes[i] = times[position];
+		}
+		latitudes = newLatitudes;
+		longitudes = newLongitudes;
+		times = newTimes;
+		start = 0;
+	}
+
+	/**
+	 * Locations of the history starting at a sequence number.
+	 *
+	 * @param endSequence sequence number following the last location of the slice
+	 */
+	public record Slice(List<VisitedLocation> locations, long endSequence) {
+	}
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.concurrent.BoundedExecutor;
+import com.openclassrooms.tourguide.concurrent.ExecutionMode;
+import com.openclassrooms.tourguide.concurrent.QueuePolicy;
+import com.openclassrooms.tourguide.concurrent.TaskExecutors;
+
+class TestBoundedExecutor {
+
+	@Test
+	void abortRejectsTasksPastCapacity() throws InterruptedException {
+		BoundedExecutor executor = TaskExecutors.newBoundedExecutor("test", ExecutionMode.PLATFORM, 1, 3,
+				QueuePolicy.ABORT, Duration.ZERO);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+
+		executor.execute(() -> {
+			started.countDown();
+			await(release);
+		});
+		started.await();
+		executor.execute(() -> await(release));
+		executor.execute(() -> await(release));
+
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+		assertEquals(2, executor.getQueueDepth());
+		assertEquals(1, executor.getActiveCount());
+		assertEquals(1, executor.getRejectedCount());
+
+		release.countDown();
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		assertEquals(0, executor.getQueueDepth());
+	}
+
+	@Test
+	void callerRunsWhenFull() {
+		BoundedExecutor executor = TaskExecutors.newBoundedExecutor("test", ExecutionMode.PLATFORM, 1, 1,
+				QueuePolicy.CALLER_RUNS, Duration.ZERO);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> await(release));
+
+		Thread caller = Thread.currentThread();
+		Thread runner = CompletableFuture.supplyAsync(Thread::currentThread, executor).join();
+
+		assertSame(caller, runner);
+		assertEquals(1, executor.getCallerRunsCount());
+		release.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	void blockWithTimeoutRejectsAfterTheTimeout() {
+		BoundedExecutor executor = TaskExecutors.newBoundedExecutor("test", ExecutionMode.PLATFORM, 1, 1,
+				QueuePolicy.BLOCK_WITH_TIMEOUT, Duration.ofMillis(50));
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> await(release));
+
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+		assertEquals(1, executor.getRejectedCount());
+		release.countDown();
+		executor.shutdown();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
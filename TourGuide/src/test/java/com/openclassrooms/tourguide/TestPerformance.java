@@ -2,6 +2,8 @@ package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -15,7 +17,10 @@ import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.benchmark.HistoryFootprint;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.loadtest.LoadTestRunner;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -43,6 +48,10 @@ class TestPerformance {
 	 * highVolumeGetRewards: 100,000 users within 20 minutes:
 	 * assertTrue(TimeUnit.MINUTES.toSeconds(20) >=
 	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	 *
+	 * highVolumeLoadTest ramps both scenarios through several user counts, for example:
+	 *
+	 * mvn test -Dtest=TestPerformance#highVolumeLoadTest -Dloadtest.steps=1000,10000,100000
 	 */
 
 
@@ -102,4 +111,64 @@ class TestPerformance {
 		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
 
+	@Test
+	void highVolumeAttractionLookup() {
+		GpsUtil gpsUtil = new GpsUtil();
+		AttractionCatalogue attractionCatalogue = new AttractionCatalogue(gpsUtil);
+		int userNumber = 100000;
+		// GpsUtil.getAttractions() sleeps on every call, its per user cost is measured on a sample
+		int sampleSize = 100;
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long attractionCount = 0;
+
+		// previous lookup: one GpsUtil call and one defensive copy per user
+		StopWatch stopWatch = new StopWatch();
+		long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+		stopWatch.start();
+		for (int i = 0; i < sampleSize; i++) {
+			List<Attraction> attractions = new ArrayList<>(gpsUtil.getAttractions());
+			attractionCount += attractions.size();
+		}
+		stopWatch.stop();
+		long gpsUtilBytes = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes) / sampleSize * userNumber;
+		long gpsUtilMillis = stopWatch.getTime() * userNumber / sampleSize;
+
+		// catalogue lookup for every user
+		stopWatch.reset();
+		allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+		stopWatch.start();
+		for (int i = 0; i < userNumber; i++) {
+			List<Attraction> attractions = attractionCatalogue.getAttractions();
+			attractionCount += attractions.size();
+		}
+		stopWatch.stop();
+		long catalogueBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+		long catalogueMillis = stopWatch.getTime();
+
+		System.out.println("highVolumeAttractionLookup: " + userNumber + " users, " + attractionCount + " attractions read."
+				+ " GpsUtil.getAttractions(): ~" + gpsUtilBytes / 1024 + " KB allocated, ~"
+				+ TimeUnit.MILLISECONDS.toSeconds(gpsUtilMillis) + " seconds (estimated from " + sampleSize + " calls)."
+				+ " AttractionCatalogue: " + catalogueBytes / 1024 + " KB allocated, " + catalogueMillis + " ms.");
+		assertTrue(catalogueBytes < gpsUtilBytes / 100);
+		assertTrue(catalogueMillis < gpsUtilMillis / 100);
+	}
+
+	@Test
+	void highVolumeLoadTest() throws IOException {
+		List<String> violations = LoadTestRunner.fromSystemProperties().run();
+
+		violations.forEach(v -> System.out.println("highVolumeLoadTest: " + v));
+		assertTrue(violations.isEmpty());
+	}
+
+	@Test
+	void highVolumeLocationHistoryFootprint() {
+		// one day of history for 100,000 users, measured on 2,000 users
+		HistoryFootprint.Result result = HistoryFootprint.measure(100_000, 2_000);
+
+		System.out.println("highVolumeLocationHistoryFootprint: " + result);
+		assertTrue(result.compactBytes() < result.objectBytes() / 2);
+	}
+
 }
@@ -1,12 +1,25 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
@@ -14,11 +27,19 @@ import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.attraction.AttractionDistance;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.helper.DistanceHelper;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardBatchProgress;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.HistoryRetention;
+import com.openclassrooms.tourguide.user.RewardTotals;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -39,6 +60,8 @@ class TestRewardsService {
 		List<UserReward> userRewards = user.getUserRewards();
 		tourGuideService.tracker.stopTracking();
 		assertTrue(userRewards.size() == 1);
+		// the rewards are only added through addUserReward, which keeps the totals in step
+		assertThrows(UnsupportedOperationException.class, userRewards::clear);
 	}
 
 	@Test
@@ -49,6 +72,168 @@ class TestRewardsService {
 		assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
 	}
 
+	@Test
+	void attractionIndexMatchesFullScan() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+		Location location = new Location(40.0, -100.0);
+
+		List<Attraction> byDistance = attractionIndex.getAttractions().stream()
+				.sorted(Comparator.comparingDouble(a -> rewardsService.getDistance(a, location)))
+				.toList();
+		List<Attraction> nearest = attractionIndex.getNearestAttractions(location, 5).stream()
+				.map(AttractionDistance::attraction)
+				.toList();
+		long withinCount = attractionIndex.getAttractions().stream()
+				.filter(a -> rewardsService.getDistance(a, location) <= 1000)
+				.count();
+
+		assertEquals(byDistance.subList(0, 5), nearest);
+		assertEquals(withinCount, attractionIndex.getAttractionsWithin(location, 1000).size());
+	}
+
+	@Test
+	void nearestAttractionsKeepTiesAndMatchFullSort() {
+		Location location = new Location(40.0, -100.0);
+		List<Attraction> attractions = List.of(
+				new Attraction("Far", "City", "State", 45.0, -100.0),
+				new Attraction("Tie A", "City", "State", 41.0, -100.0),
+				new Attraction("Tie B", "City", "State", 41.0, -100.0),
+				new Attraction("Tie C", "City", "State", 41.0, -100.0),
+				new Attraction("Near", "City", "State", 40.5, -100.0));
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		List<String> nearest = attractionIndex.getNearestAttractions(location, 3).stream()
+				.map(a -> a.attraction().attractionName)
+				.toList();
+		assertEquals(List.of("Near", "Tie A", "Tie B"), nearest);
+		assertEquals(attractions.size(), attractionIndex.getNearestAttractions(location, 100).size());
+
+		AttractionIndex catalogueIndex = new RewardsService(new GpsUtil(), new RewardCentral()).getAttractionIndex();
+		List<Double> byDistance = catalogueIndex.getAttractions().stream()
+				.map(a -> DistanceHelper.getDistance(a, location))
+				.sorted()
+				.toList();
+		for (int k = 1; k <= byDistance.size(); k++) {
+			List<Double> distances = catalogueIndex.getNearestAttractions(location, k).stream()
+					.map(AttractionDistance::distance)
+					.toList();
+			assertEquals(k, distances.size());
+			for (int i = 0; i < k; i++) {
+				assertEquals(byDistance.get(i), distances.get(i), 1e-6);
+			}
+		}
+	}
+
+	@Test
+	void rewardTotalsFollowAcceptedRewards() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction first = new Attraction("First", "City", "State", 40.0, -100.0);
+		Attraction second = new Attraction("Second", "City", "State", 41.0, -100.0);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), first, new Date());
+
+		user.addUserReward(new UserReward(visitedLocation, first, 100));
+		user.addUserReward(new UserReward(visitedLocation, first, 500));
+		user.addUserReward(new UserReward(visitedLocation, second, 20));
+
+		assertEquals(new RewardTotals(2, 120), user.getRewardTotals());
+		assertEquals(user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum(),
+				user.getRewardTotals().rewardPoints());
+	}
+
+	@Test
+	void attractionCatalogueRefreshKeepsAttractionIds() {
+		AttractionCatalogue attractionCatalogue = new AttractionCatalogue(new GpsUtil());
+		List<Attraction> attractions = attractionCatalogue.getAttractions();
+
+		attractionCatalogue.refresh();
+
+		assertEquals(attractions.stream().map(a -> a.attractionId).toList(),
+				attractionCatalogue.getAttractions().stream().map(a -> a.attractionId).toList());
+	}
+
+	@Test
+	void incrementalRewardsSkipEvaluatedLocations() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		user.advanceRewardsWatermark(1);
+
+		rewardsService.calculateRewardsFuture(user).get();
+		assertEquals(0, user.getUserRewards().size());
+
+		rewardsService.setIncrementalRewards(false);
+		rewardsService.calculateRewardsFuture(user).get();
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(1, user.getRewardsWatermark());
+	}
+
+	@Test
+	void calculateRewardsInBatchesReportsEveryBatch() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "user" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			users.add(user);
+		}
+
+		List<RewardBatchProgress> progress = new CopyOnWriteArrayList<>();
+		rewardsService.calculateRewardsInBatches(users, 3, progress::add).join();
+
+		assertEquals(4, progress.size());
+		assertEquals(10, progress.stream().mapToInt(RewardBatchProgress::batchUsers).sum());
+		assertTrue(progress.stream().anyMatch(p -> p.isDone() && p.completedUsers() == 10));
+		assertTrue(progress.stream().allMatch(p -> p.failure() == null));
+		users.forEach(u -> assertEquals(1, u.getUserRewards().size()));
+	}
+
+	@Test
+	void visitedLocationHistoryIsBoundedAndCompacted() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new HistoryRetention(2, 3, Duration.ofDays(1)));
+
+		// the attraction visit is compacted before the rewards are calculated
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		List<VisitedLocation> visits = new ArrayList<>();
+		for (int i = 0; i < 9; i++) {
+			visits.add(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+			user.addToVisitedLocations(visits.get(i));
+		}
+
+		assertEquals(5, user.getVisitedLocationCount());
+		assertEquals(10, user.getVisitedLocationSequence());
+		assertEquals(visits.get(8), user.getLastVisitedLocation());
+		assertEquals(visits.subList(4, 9).stream().map(v -> v.location.latitude).toList(),
+				user.getVisitedLocations().stream().map(v -> v.location.latitude).toList());
+
+		User compactedUser = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com",
+				new HistoryRetention(1, 3, Duration.ofDays(1)));
+		compactedUser.addToVisitedLocations(new VisitedLocation(compactedUser.getUserId(), attraction, new Date()));
+		compactedUser.addToVisitedLocations(new VisitedLocation(compactedUser.getUserId(), new Location(0, 0), new Date()));
+		rewardsService.calculateRewardsFuture(compactedUser).get();
+		assertEquals(1, compactedUser.getUserRewards().size());
+		assertEquals(2, compactedUser.getRewardsWatermark());
+
+		// locations older than the retention are dropped once compacted
+		User expiredUser = new User(UUID.randomUUID(), "jon3", "000", "jon3@tourGuide.com",
+				new HistoryRetention(1, 3, Duration.ofDays(1)));
+		Date lastWeek = new Date(System.currentTimeMillis() - Duration.ofDays(7).toMillis());
+		expiredUser.addToVisitedLocations(new VisitedLocation(expiredUser.getUserId(), new Location(1, 1), lastWeek));
+		expiredUser.addToVisitedLocations(new VisitedLocation(expiredUser.getUserId(), new Location(2, 2), new Date()));
+		assertEquals(1, expiredUser.getVisitedLocationCount());
+		assertEquals(2, expiredUser.getVisitedLocationSequence());
+	}
+
 	//fixed, no more throw ConcurrentModificationException
 	@Test
 	void nearAllAttractions() throws ExecutionException, InterruptedException {
@@ -66,4 +251,60 @@ class TestRewardsService {
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
+	@Test
+	void concurrentTrackingAndRewards() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+
+		InternalTestHelper.setInternalUserNumber(20);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		// the first shard starts with the service, let its run complete
+		tourGuideService.tracker.stopTracking().join();
+		List<User> allUsers = tourGuideService.getAllUsers();
+		Map<User, Integer> visitedLocationCounts = new HashMap<>();
+		allUsers.forEach(u -> visitedLocationCounts.put(u, u.getVisitedLocationCount()));
+		int rounds = 3;
+
+		// readers keep iterating over the users while tracking and rewards mutate them
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Throwable> readerErrors = new CopyOnWriteArrayList<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (running.get()) {
+					for (User user : allUsers) {
+						user.getUserRewards().forEach(r -> r.attraction.attractionName.length());
+						user.getVisitedLocations().forEach(l -> l.timeVisited.getTime());
+						user.getLastVisitedLocation();
+					}
+				}
+			} catch (Throwable t) {
+				readerErrors.add(t);
+			}
+		});
+		reader.start();
+
+		ExecutorService passes = Executors.newFixedThreadPool(2);
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < rounds; i++) {
+			results.add(passes.submit(() -> allUsers.stream().map(tourGuideService::trackUserLocation).toList()
+					.forEach(CompletableFuture::join)));
+			results.add(passes.submit(() -> rewardsService.calculateRewardsForAllUsers(allUsers)));
+		}
+		for (Future<?> result : results) {
+			assertDoesNotThrow(() -> result.get());
+		}
+		passes.shutdown();
+		running.set(false);
+		reader.join();
+
+		assertTrue(readerErrors.isEmpty());
+		int attractionCount = rewardsService.getAttractionIndex().getAttractions().size();
+		for (User user : allUsers) {
+			assertEquals(visitedLocationCounts.get(user) + rounds, user.getVisitedLocations().size());
+			assertEquals(attractionCount, user.getUserRewards().size());
+			assertEquals(attractionCount, user.getUserRewards().stream().map(r -> r.attraction.attractionId).distinct().count());
+		}
+	}
+
 }
@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.concurrent.ConcurrencyLimiter;
+import com.openclassrooms.tourguide.concurrent.ExecutionMode;
+import com.openclassrooms.tourguide.concurrent.TaskExecutors;
+
+class TestTaskExecutors {
+
+	@Test
+	void limiterCapsConcurrentCalls() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+		ExecutorService callers = Executors.newFixedThreadPool(4);
+		AtomicInteger inFlight = new AtomicInteger();
+		CountDownLatch entered = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+
+		List<CompletableFuture<Integer>> calls = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			calls.add(CompletableFuture.supplyAsync(() -> limiter.call(() -> {
+				inFlight.incrementAndGet();
+				entered.countDown();
+				await(release);
+				return inFlight.getAndDecrement();
+			}), callers));
+		}
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		// the other callers had time to enter if the limiter let them
+		Thread.sleep(100);
+		assertEquals(2, inFlight.get());
+
+		release.countDown();
+		calls.forEach(call -> assertTrue(call.join() <= 2));
+		callers.shutdown();
+	}
+
+	@Test
+	void limiterWithoutBoundLetsEveryCallIn() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(0);
+		ExecutorService callers = Executors.newFixedThreadPool(3);
+		CountDownLatch entered = new CountDownLatch(3);
+		CountDownLatch release = new CountDownLatch(1);
+
+		for (int i = 0; i < 3; i++) {
+			callers.execute(() -> limiter.call(() -> {
+				entered.countDown();
+				await(release);
+				return null;
+			}));
+		}
+
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		callers.shutdown();
+	}
+
+	@Test
+	void virtualModeFallsBackToPlatformPoolBeforeJava21() {
+		assumeTrue(Runtime.version().feature() < 21);
+		ExecutorService executor = TaskExecutors.newExecutor("fallback", ExecutionMode.VIRTUAL, 3);
+
+		Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).join();
+
+		assertTrue(executor instanceof ThreadPoolExecutor);
+		assertEquals(3, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+		assertTrue(thread.getName().startsWith("fallback-"));
+		executor.shutdown();
+	}
+
+	@Test
+	void virtualModeRunsOnVirtualThreadsFromJava21() throws ReflectiveOperationException {
+		assumeTrue(Runtime.version().feature() >= 21);
+		ExecutorService executor = TaskExecutors.newExecutor("virtual", ExecutionMode.VIRTUAL, 3);
+
+		Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).join();
+
+		assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+		executor.shutdown();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,23 +1,45 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotDTO;
+import com.openclassrooms.tourguide.dto.UserSnapshotPageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.cache.TripDealsCache;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserExportService;
+import com.openclassrooms.tourguide.tracker.Tracker;
 import com.openclassrooms.tourguide.user.User;
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 class TestTourGuideService {
 
@@ -34,6 +56,71 @@ class TestTourGuideService {
 		assertTrue(visitedLocation.userId.equals(user.getUserId()));
 	}
 
+	@Test
+	void trackUsersInBatchesLocatesAndRewardsEveryUser() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(10);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		// the first shard starts with the service, let its run complete
+		tourGuideService.tracker.stopTracking().join();
+		List<User> users = tourGuideService.getAllUsers();
+		Map<User, Integer> visitedLocationCounts = new HashMap<>();
+		users.forEach(u -> visitedLocationCounts.put(u, u.getVisitedLocationCount()));
+
+		tourGuideService.trackUsersInBatches(users, 3, 2).join();
+
+		for (User user : users) {
+			assertEquals(visitedLocationCounts.get(user) + 1, user.getVisitedLocationCount());
+			assertEquals(user.getVisitedLocationCount(), user.getRewardsWatermark());
+		}
+	}
+
+	@Test
+	void trackerShardsLocateEveryUser() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(8);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setPollingInterval(Duration.ofMillis(500));
+		properties.getTracker().setShardCount(4);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(), properties);
+
+		// every shard has started once after one interval, and had time to complete
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline
+				&& !tourGuideService.getUsers().stream().allMatch(u -> u.getVisitedLocationCount() > 3)) {
+			Thread.sleep(50);
+		}
+		List<Tracker.ShardStatus> statuses = tourGuideService.tracker.getShardStatuses();
+		tourGuideService.tracker.stopTracking();
+
+		assertTrue(tourGuideService.getUsers().stream().allMatch(u -> u.getVisitedLocationCount() > 3));
+		assertEquals(4, statuses.size());
+		assertEquals(8, statuses.stream().mapToInt(Tracker.ShardStatus::userCount).sum());
+	}
+
+	@Test
+	void trackUserLocationPublishesMetrics() {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(new RewardCentral(), new AttractionCatalogue(gpsUtil),
+				new TourGuideProperties(), meterRegistry);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(),
+				new TourGuideProperties(), meterRegistry);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.trackUserLocation(user).join();
+
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.TRACKING).timer().count());
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.REWARDS_CALCULATION).timer().count());
+		assertEquals(1, meterRegistry.get(TourGuideMetrics.EXTERNAL_CALLS).tag("service", "gpsUtil").timer().count());
+		assertEquals(0, meterRegistry.get(TourGuideMetrics.EXECUTOR_QUEUED).tag("name", "tracking").gauge().value());
+		assertEquals(10, meterRegistry.get(TourGuideMetrics.TRACKER_SHARD_LAG).gauges().size());
+	}
+
 	@Test
 	void addUser() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -56,6 +143,27 @@ class TestTourGuideService {
 		assertEquals(user2, retrivedUser2);
 	}
 
+	@Test
+	void addUserOnlyOncePerName() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User sameName = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		tourGuideService.addUser(user);
+		tourGuideService.addUser(sameName);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(user, tourGuideService.getUser("jon"));
+		assertEquals(user, tourGuideService.getUserById(user.getUserId()));
+		assertEquals(null, tourGuideService.getUserById(sameName.getUserId()));
+		assertEquals(1, tourGuideService.getUsers().size());
+	}
+
 	@Test
 	void getAllUsers() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -105,8 +213,7 @@ class TestTourGuideService {
 
 		//Act
 		List<NearbyAttractionDTO> results = tourGuideService
-				.getNearByAttractionsFuture(tourGuideService
-						.getAttractionsDistanceFromLocationFuture(visitedLocation).get() ,user, visitedLocation).get();
+				.getNearbyAttractionsFuture(user, visitedLocation, TourGuideService.NEARBY_ATTRACTIONS_COUNT).get();
 
 		tourGuideService.tracker.stopTracking();
 
@@ -114,6 +221,144 @@ class TestTourGuideService {
 		assertEquals(5, results.size());
 	}
 
+	@Test
+	void nearbyAttractionsLocateTheUserOnce() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<NearbyAttractionDTO> first = tourGuideService.getNearbyAttractionsFuture(user, 3).get();
+		List<NearbyAttractionDTO> second = tourGuideService.getNearbyAttractionsFuture(user, 3).get();
+
+		assertEquals(3, first.size());
+		assertEquals(first, second);
+		assertEquals(1, user.getVisitedLocationCount());
+		assertTrue(first.get(0).getDistanceInMiles() <= first.get(2).getDistanceInMiles());
+		assertThrows(IllegalArgumentException.class, () -> tourGuideService.getNearbyAttractionsFuture(user, 0));
+	}
+
+	@Test
+	void bulkQueriesReturnKnownLocationsWithoutLocating() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(5);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking().join();
+		User neverLocated = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.addUser(neverLocated);
+
+		List<UserSnapshotDTO> snapshots = tourGuideService.getUserSnapshots(List.of("internalUser3", "unknown", "jon"));
+		UserSnapshotPageDTO firstPage = tourGuideService.getUserSnapshotPage(null, 4);
+		UserSnapshotPageDTO lastPage = tourGuideService.getUserSnapshotPage(firstPage.getNextCursor(), 4);
+		Map<UUID, Location> currentLocations = tourGuideService.getAllCurrentLocations();
+
+		assertEquals(List.of("internalUser3", "jon"), snapshots.stream().map(UserSnapshotDTO::getUserName).toList());
+		assertEquals(null, snapshots.get(1).getLastVisitedLocation());
+		assertEquals(List.of("internalUser0", "internalUser1", "internalUser2", "internalUser3"),
+				firstPage.getUsers().stream().map(UserSnapshotDTO::getUserName).toList());
+		assertEquals(List.of("internalUser4", "jon"), lastPage.getUsers().stream().map(UserSnapshotDTO::getUserName).toList());
+		assertEquals(null, lastPage.getNextCursor());
+		assertEquals(5, currentLocations.size());
+		assertEquals(0, neverLocated.getVisitedLocationCount());
+		assertThrows(IllegalArgumentException.class, () -> tourGuideService.getUserSnapshots(
+				Collections.nCopies(TourGuideService.MAX_USER_PAGE_SIZE + 1, "jon")));
+	}
+
+	@Test
+	void exportWritesOneLinePerUserAndStopsOnWriteFailure() throws IOException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(500);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		ObjectMapper objectMapper = new ObjectMapper();
+		UserExportService userExportService = new UserExportService(tourGuideService, objectMapper);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int written = userExportService.writeRewards(out);
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		// a client closing the connection fails the next write
+		OutputStream closedConnection = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Connection closed");
+			}
+		};
+
+		assertEquals(500, written);
+		assertEquals(500, lines.length);
+		for (String line : lines) {
+			// one JSON object per line, with nothing before or after it
+			assertEquals(line.trim(), line);
+			assertTrue(objectMapper.readTree(line).has("rewardPoints"));
+		}
+		assertThrows(IOException.class, () -> userExportService.writeLocations(closedConnection));
+	}
+
+	@Test
+	void repeatedNearByAttractionsUseCachedRewardPoints() throws ExecutionException, InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date());
+
+		List<NearbyAttractionDTO> first = tourGuideService.getNearbyAttractionsFuture(user, visitedLocation,
+				TourGuideService.NEARBY_ATTRACTIONS_COUNT).get();
+		long missCount = rewardsService.getRewardPointsCache().getStats().missCount();
+		List<NearbyAttractionDTO> second = tourGuideService.getNearbyAttractionsFuture(user, visitedLocation,
+				TourGuideService.NEARBY_ATTRACTIONS_COUNT).get();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(missCount, rewardsService.getRewardPointsCache().getStats().missCount());
+		assertEquals(first, second);
+	}
+
+	@Test
+	void tripDealsAreCachedUntilPricingInputsChange() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		List<Provider> providers = tourGuideService.getTripDeals(user);
+		List<Provider> cachedProviders = tourGuideService.getTripDeals(user);
+		user.getUserPreferences().setNumberOfAdults(2);
+		List<Provider> repricedProviders = tourGuideService.getTripDeals(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertSame(providers, cachedProviders);
+		assertNotSame(providers, repricedProviders);
+		assertSame(repricedProviders, user.getTripDeals());
+		assertEquals(2, tourGuideService.getTripDealsCache().getStats().missCount());
+	}
+
+	@Test
+	void failedPricingIsNotCached() {
+		AtomicInteger calls = new AtomicInteger();
+		TripDealsCache tripDealsCache = new TripDealsCache(10, Duration.ofMinutes(1), key -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new OutOfMemoryError("pricing failed");
+			}
+			return List.of();
+		});
+		TripDealsCache.TripDealsKey key = new TripDealsCache.TripDealsKey(UUID.randomUUID(), 1, 0, 1, 0);
+
+		assertThrows(OutOfMemoryError.class, () -> tripDealsCache.getTripDeals(key));
+
+		assertEquals(List.of(), tripDealsCache.getTripDeals(key));
+		assertEquals(2, calls.get());
+	}
+
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
 		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
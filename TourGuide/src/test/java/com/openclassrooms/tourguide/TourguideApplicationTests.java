@@ -1,13 +1,71 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserExportService;
+import com.openclassrooms.tourguide.user.User;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 class TourguideApplicationTests {
 
+	@Autowired
+	ApplicationContext applicationContext;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	TourGuideService tourGuideService;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void rewardsServiceIsASingleBean() {
+		assertEquals(1, applicationContext.getBeanNamesForType(RewardsService.class).length);
+	}
+
+	@Test
+	void exportStreamsNdjsonWithItsOwnTimeout() throws Exception {
+		tourGuideService.addUser(new User(UUID.randomUUID(), "exported", "000", "exported@tourGuide.com"));
+
+		MvcResult result = mockMvc.perform(get("/exportRewards"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertEquals(Duration.ofMinutes(5).toMillis(), result.getRequest().getAsyncContext().getTimeout());
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(UserExportService.NDJSON_MEDIA_TYPE));
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		String[] lines = result.getResponse().getContentAsString().split("\\n");
+		assertEquals(tourGuideService.getUsers().size(), lines.length);
+		for (String line : lines) {
+			assertEquals(line.trim(), line);
+			assertTrue(objectMapper.readTree(line).has("userName"));
+		}
+	}
+
 }
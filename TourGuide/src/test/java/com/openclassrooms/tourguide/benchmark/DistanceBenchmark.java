@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.attraction.DistanceEngine;
+import com.openclassrooms.tourguide.helper.DistanceHelper;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Compares the distance kernels: the spherical law of cosines used before, the haversine of
+ * DistanceHelper and the DistanceEngine with precomputed trigonometry. The accuracy of each
+ * kernel against the others is printed once before the measurements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+	private static final int QUERY_COUNT = 1024;
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+
+	private List<Attraction> attractions;
+	private DistanceEngine distanceEngine;
+	private double[] queryLatitudes;
+	private double[] queryLongitudes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		attractions = new AttractionCatalogue(new GpsUtil()).getAttractions();
+		distanceEngine = new DistanceEngine(attractions);
+
+		// queries spread over the world, plus some exactly on the attractions
+		Random random = new Random(42);
+		queryLatitudes = new double[QUERY_COUNT];
+		queryLongitudes = new double[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; i++) {
+			if (i % 8 == 0) {
+				Attraction attraction = attractions.get(i % attractions.size());
+				queryLatitudes[i] = attraction.latitude;
+				queryLongitudes[i] = attraction.longitude;
+			} else {
+				queryLatitudes[i] = -85 + random.nextDouble() * 170;
+				queryLongitudes[i] = -180 + random.nextDouble() * 360;
+			}
+		}
+		printAccuracy();
+	}
+
+	@Benchmark
+	public double lawOfCosines() {
+		int i = next++;
+		Attraction attraction = attractions.get(i % attractions.size());
+		int query = i & (QUERY_COUNT - 1);
+		return lawOfCosinesDistance(queryLatitudes[query], queryLongitudes[query], attraction.latitude, attraction.longitude);
+	}
+
+	@Benchmark
+	public double haversine() {
+		int i = next++;
+		Attraction attraction = attractions.get(i % attractions.size());
+		int query = i & (QUERY_COUNT - 1);
+		return DistanceHelper.getDistance(queryLatitudes[query], queryLongitudes[query], attraction.latitude, attraction.longitude);
+	}
+
+	@Benchmark
+	public double distanceEngine() {
+		int i = next++;
+		int query = i & (QUERY_COUNT - 1);
+		return distanceEngine.getDistance(i % distanceEngine.size(), queryLatitudes[query], queryLongitudes[query]);
+	}
+
+	@Benchmark
+	public boolean distanceEngineProximity() {
+		int i = next++;
+		int query = i & (QUERY_COUNT - 1);
+		return distanceEngine.isWithin(i % distanceEngine.size(), queryLatitudes[query], queryLongitudes[query], 10);
+	}
+
+	// RewardsService.getDistance before the haversine kernel
+	static double lawOfCosinesDistance(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double lat1 = Math.toRadians(latitude1);
+		double lon1 = Math.toRadians(longitude1);
+		double lat2 = Math.toRadians(latitude2);
+		double lon2 = Math.toRadians(longitude2);
+
+		double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
+				+ Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+
+		double nauticalMiles = 60 * Math.toDegrees(angle);
+		return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+	}
+
+	private void printAccuracy() {
+		double maxEngineError = 0;
+		double maxLawOfCosinesError = 0;
+		int lawOfCosinesNaN = 0;
+		for (int query = 0; query < QUERY_COUNT; query++) {
+			for (int position = 0; position < attractions.size(); position++) {
+				Attraction attraction = attractions.get(position);
+				double reference = DistanceHelper.getDistance(queryLatitudes[query], queryLongitudes[query],
+						attraction.latitude, attraction.longitude);
+				double engine = distanceEngine.getDistance(position, queryLatitudes[query], queryLongitudes[query]);
+				double lawOfCosines = lawOfCosinesDistance(queryLatitudes[query], queryLongitudes[query],
+						attraction.latitude, attraction.longitude);
+				maxEngineError = Math.max(maxEngineError, Math.abs(engine - reference));
+				if (Double.isNaN(lawOfCosines)) {
+					lawOfCosinesNaN++;
+				} else {
+					maxLawOfCosinesError = Math.max(maxLawOfCosinesError, Math.abs(lawOfCosines - reference));
+				}
+			}
+		}
+		System.out.println("Max difference with DistanceHelper (miles): distance engine " + maxEngineError
+				+ ", law of cosines " + maxLawOfCosinesError + " (" + lawOfCosinesNaN + " NaN results)");
+	}
+}
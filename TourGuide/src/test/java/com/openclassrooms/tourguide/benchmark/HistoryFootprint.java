@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.openclassrooms.tourguide.user.HistoryRetention;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Retained heap of one day of visited locations, one every 5 minutes, for a population of users:
+ * the previous list of VisitedLocation objects against the primitive VisitedLocationHistory.
+ * The retained heap is measured on a sample of users and extrapolated to the population.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.openclassrooms.tourguide.benchmark.HistoryFootprint -Dfootprint.sampleUsers=100000
+ * (measuring the full 100,000 users needs MAVEN_OPTS=-Xmx4g)
+ */
+public class HistoryFootprint {
+	public static final int POINTS_PER_DAY = (int) (TimeUnit.DAYS.toMinutes(1) / 5);
+
+	public static void main(String[] args) {
+		Result result = measure(100_000, Integer.getInteger("footprint.sampleUsers", 10_000));
+		System.out.println(result);
+	}
+
+	/**
+	 * @param users population the measures are extrapolated to
+	 * @param sampleUsers users actually created
+	 */
+	public static Result measure(int users, int sampleUsers) {
+		Random random = new Random(42);
+		long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+
+		long before = usedHeapAfterGc();
+		List<List<VisitedLocation>> objectHistories = new ArrayList<>(sampleUsers);
+		for (int i = 0; i < sampleUsers; i++) {
+			UUID userId = UUID.randomUUID();
+			List<VisitedLocation> history = new ArrayList<>();
+			for (int point = 0; point < POINTS_PER_DAY; point++) {
+				history.add(visitedLocation(userId, random, start, point));
+			}
+			objectHistories.add(history);
+		}
+		long objectBytes = usedHeapAfterGc() - before;
+		// the histories are otherwise collectable before being measured
+		Reference.reachabilityFence(objectHistories);
+		objectHistories = null;
+
+		before = usedHeapAfterGc();
+		List<VisitedLocationHistory> compactHistories = new ArrayList<>(sampleUsers);
+		for (int i = 0; i < sampleUsers; i++) {
+			UUID userId = UUID.randomUUID();
+			VisitedLocationHistory history = new VisitedLocationHistory(userId, HistoryRetention.DEFAULT);
+			for (int point = 0; point < POINTS_PER_DAY; point++) {
+				history.add(visitedLocation(userId, random, start, point));
+			}
+			compactHistories.add(history);
+		}
+		long compactBytes = usedHeapAfterGc() - before;
+		Reference.reachabilityFence(compactHistories);
+
+		double scale = (double) users / sampleUsers;
+		return new Result(users, POINTS_PER_DAY, (long) (objectBytes * scale), (long) (compactBytes * scale));
+	}
+
+	private static VisitedLocation visitedLocation(UUID userId, Random random, long start, int point) {
+		return new VisitedLocation(userId, new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360),
+				new Date(start + TimeUnit.MINUTES.toMillis(5L * point)));
+	}
+
+	private static long usedHeapAfterGc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	public record Result(int users, int pointsPerUser, long objectBytes, long compactBytes) {
+
+		public double objectBytesPerPoint() {
+			return (double) objectBytes / ((long) users * pointsPerUser);
+		}
+
+		public double compactBytesPerPoint() {
+			return (double) compactBytes / ((long) users * pointsPerUser);
+		}
+
+		@Override
+		public String toString() {
+			return users + " users x " + pointsPerUser + " points: VisitedLocation objects "
+					+ objectBytes / (1024 * 1024) + " MB (" + Math.round(objectBytesPerPoint()) + " bytes/point), "
+					+ "VisitedLocationHistory " + compactBytes / (1024 * 1024) + " MB ("
+					+ Math.round(compactBytesPerPoint()) + " bytes/point)";
+		}
+	}
+}
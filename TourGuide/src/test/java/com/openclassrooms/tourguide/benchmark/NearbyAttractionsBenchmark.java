@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * The /getNearbyAttractions lookup for users with a known location.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class NearbyAttractionsBenchmark {
+	private int next;
+
+	@Benchmark
+	public List<NearbyAttractionDTO> getNearByAttractions(TourGuideState state) {
+		User user = state.users.get(next++ % state.users.size());
+		VisitedLocation visitedLocation = user.getLastVisitedLocation();
+		return state.tourGuideService.getNearbyAttractionsFuture(user, visitedLocation,
+				TourGuideService.NEARBY_ATTRACTIONS_COUNT).join();
+	}
+}
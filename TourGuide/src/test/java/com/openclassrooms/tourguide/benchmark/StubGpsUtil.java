@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil without its rate limiter and random sleeps: locations come from a seeded random
+ * generator after a fixed latency, so that benchmark results are reproducible offline.
+ */
+public class StubGpsUtil extends GpsUtil {
+	private final long latencyMillis;
+	private final Random random;
+	private final List<Attraction> attractions;
+
+	public StubGpsUtil(long latencyMillis, long seed) {
+		this.latencyMillis = latencyMillis;
+		this.random = new Random(seed);
+		// the attractions are hard coded in GpsUtil, they only need to be loaded once
+		this.attractions = List.copyOf(super.getAttractions());
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		StubLatency.sleep(latencyMillis);
+		return new VisitedLocation(userId, randomLocation(), new Date());
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		StubLatency.sleep(latencyMillis);
+		return attractions;
+	}
+
+	public Location randomLocation() {
+		return new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+	}
+}
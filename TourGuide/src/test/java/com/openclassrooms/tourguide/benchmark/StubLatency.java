@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+final class StubLatency {
+
+	private StubLatency() {
+	}
+
+	static void sleep(long latencyMillis) {
+		if (latencyMillis <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral with a fixed latency and reward points derived from the ids.
+ */
+public class StubRewardCentral extends RewardCentral {
+	private final long latencyMillis;
+
+	public StubRewardCentral(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		StubLatency.sleep(latencyMillis);
+		return 1 + Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+	}
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * TripPricer with a fixed latency and prices derived from the pricing inputs.
+ */
+public class StubTripPricer extends TripPricer {
+	private static final int PROVIDER_COUNT = 5;
+	private final long latencyMillis;
+
+	public StubTripPricer(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay, int rewardsPoints) {
+		StubLatency.sleep(latencyMillis);
+		List<Provider> providers = new ArrayList<>(PROVIDER_COUNT);
+		for (int i = 0; i < PROVIDER_COUNT; i++) {
+			double price = Math.max(0, (100.0 + 10 * i) * (adults + children / 2.0) * nightsStay - rewardsPoints);
+			providers.add(new Provider(UUID.randomUUID(), "Provider " + i, price));
+		}
+		return providers;
+	}
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * TourGuide services wired on the stubbed external services, with a population of internal users.
+ * The latencies are 0 by default to measure TourGuide itself, pass e.g. -p gpsLatencyMillis=50
+ * to simulate the real services.
+ */
+@State(Scope.Benchmark)
+public class TourGuideState {
+	@Param({"1000", "10000", "100000"})
+	public int userCount;
+
+	// number of visited locations of each user
+	@Param({"10", "100"})
+	public int historyLength;
+
+	@Param("true")
+	public boolean incrementalRewards;
+
+	@Param("0")
+	public long gpsLatencyMillis;
+
+	@Param("0")
+	public long rewardCentralLatencyMillis;
+
+	@Param("0")
+	public long tripPricerLatencyMillis;
+
+	public StubGpsUtil gpsUtil;
+	public RewardsService rewardsService;
+	public TourGuideService tourGuideService;
+	public List<User> users;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		TourGuideProperties properties = new TourGuideProperties();
+		gpsUtil = new StubGpsUtil(gpsLatencyMillis, 42);
+		rewardsService = new RewardsService(new StubRewardCentral(rewardCentralLatencyMillis),
+				new AttractionCatalogue(gpsUtil), properties);
+		rewardsService.setIncrementalRewards(incrementalRewards);
+
+		InternalTestHelper.setInternalUserNumber(userCount);
+		tourGuideService = new TourGuideService(gpsUtil, rewardsService, new StubTripPricer(tripPricerLatencyMillis), properties);
+		// the benchmarks drive the tracking themselves
+		tourGuideService.tracker.stopTracking().join();
+
+		users = tourGuideService.getAllUsers();
+		for (User user : users) {
+			while (user.getVisitedLocationCount() < historyLength) {
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.randomLocation(), new Date()));
+			}
+		}
+		// rewards the initial history, the benchmarks measure the following passes
+		rewardsService.calculateRewardsForAllUsers(users);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		tourGuideService.tracker.stopTracking();
+	}
+}
@@ -0,0 +1,56 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * User.addUserReward for an attraction the user is already rewarded for, the common case of
+ * the reward loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserBenchmark {
+	private User user;
+	private List<UserReward> rewards;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = new AttractionCatalogue(new StubGpsUtil(0, 42)).getAttractions();
+		rewards = attractions.stream()
+				.map(a -> new UserReward(new VisitedLocation(user.getUserId(), a, new Date()), a, 100))
+				.toList();
+		rewards.forEach(user::addUserReward);
+	}
+
+	@Benchmark
+	public void addUserReward() {
+		user.addUserReward(rewards.get(next++ % rewards.size()));
+	}
+}
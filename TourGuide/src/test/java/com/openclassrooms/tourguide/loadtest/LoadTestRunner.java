@@ -0,0 +1,255 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalogue;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.modules.TourGuideProperties;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Runs the high volume scenarios of TestPerformance on a growing population, one step per user
+ * count, and records for each step the throughput, the per user latency percentiles, the heap
+ * usage and the GC activity. The scenarios go through the batch paths used by the Tracker, the
+ * latency of a user being the time until its batch completes. The results are written as JSON and CSV, and the run fails when a
+ * threshold is crossed.
+ *
+ * Settings are read from system properties:
+ * loadtest.scenarios (default TRACK_LOCATION,GET_REWARDS), loadtest.steps (user counts, default 100),
+ * loadtest.report (default target/loadtest-report),
+ * loadtest.maxP99Millis and loadtest.minThroughput (absolute thresholds, off by default),
+ * loadtest.baseline (a previous JSON report) and loadtest.maxRegressionPercent (default 20).
+ */
+public class LoadTestRunner {
+	private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	public enum Scenario {
+		// batch tracking of the Tracker, one GPS call and one reward calculation per user
+		TRACK_LOCATION,
+		// batch reward calculation, each user standing on an attraction
+		GET_REWARDS
+	}
+
+	private final List<Scenario> scenarios;
+	private final List<Integer> steps;
+	private final File report;
+	private final double maxP99Millis;
+	private final double minThroughput;
+	private final File baseline;
+	private final double maxRegressionPercent;
+
+	public LoadTestRunner(List<Scenario> scenarios, List<Integer> steps, File report, double maxP99Millis, double minThroughput,
+						  File baseline, double maxRegressionPercent) {
+		this.scenarios = scenarios;
+		this.steps = steps;
+		this.report = report;
+		this.maxP99Millis = maxP99Millis;
+		this.minThroughput = minThroughput;
+		this.baseline = baseline;
+		this.maxRegressionPercent = maxRegressionPercent;
+	}
+
+	public static LoadTestRunner fromSystemProperties() {
+		List<Scenario> scenarios = Arrays.stream(System.getProperty("loadtest.scenarios", "TRACK_LOCATION,GET_REWARDS").split(","))
+				.map(String::trim)
+				.map(Scenario::valueOf)
+				.toList();
+		List<Integer> steps = Arrays.stream(System.getProperty("loadtest.steps", "100").split(","))
+				.map(String::trim)
+				.map(Integer::valueOf)
+				.toList();
+		String baseline = System.getProperty("loadtest.baseline");
+		return new LoadTestRunner(scenarios, steps,
+				new File(System.getProperty("loadtest.report", "target/loadtest-report")),
+				Double.parseDouble(System.getProperty("loadtest.maxP99Millis", "Infinity")),
+				Double.parseDouble(System.getProperty("loadtest.minThroughput", "0")),
+				baseline != null ? new File(baseline) : null,
+				Double.parseDouble(System.getProperty("loadtest.maxRegressionPercent", "20")));
+	}
+
+	/**
+	 * Runs every step, writes the report and returns the threshold violations, empty when the run passed.
+	 */
+	public List<String> run() throws IOException {
+		List<StepResult> results = new ArrayList<>();
+		for (Scenario scenario : scenarios) {
+			for (int userCount : steps) {
+				StepResult result = runStep(scenario, userCount);
+				System.out.println("loadtest: " + result);
+				results.add(result);
+			}
+		}
+		writeReport(results);
+		return checkThresholds(results);
+	}
+
+	// every step has its own services, closed at the end of the step so that the next step does not measure their users
+	private StepResult runStep(Scenario scenario, int userCount) {
+		TourGuideProperties properties = new TourGuideProperties();
+		GpsUtil gpsUtil = new GpsUtil();
+		InternalTestHelper.setInternalUserNumber(userCount);
+		try (RewardsService rewardsService = new RewardsService(new RewardCentral(), new AttractionCatalogue(gpsUtil), properties);
+			 TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(), properties)) {
+			tourGuideService.tracker.stopTracking().join();
+			return runStep(scenario, userCount, properties.getExecution(), rewardsService, tourGuideService);
+		}
+	}
+
+	private StepResult runStep(Scenario scenario, int userCount, TourGuideProperties.Execution execution,
+							   RewardsService rewardsService, TourGuideService tourGuideService) {
+		List<User> users = tourGuideService.getAllUsers();
+		if (scenario == Scenario.GET_REWARDS) {
+			Attraction attraction = rewardsService.getAttractionCatalogue().getAttractions().get(0);
+			users.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
+		}
+
+		System.gc();
+		long gcCount = totalGcCount();
+		long gcMillis = totalGcMillis();
+		resetPeakHeapUsage();
+
+		// the users of a batch are all done when their batch completes, that is their latency
+		long[] latencies = new long[users.size()];
+		AtomicInteger completedUsers = new AtomicInteger();
+		long start = System.nanoTime();
+		if (scenario == Scenario.TRACK_LOCATION) {
+			tourGuideService.trackUsersInBatches(users, execution.getTrackingBatchSize(), execution.getTrackingBatchesInFlight(),
+					batch -> recordLatencies(latencies, completedUsers, batch.size(), System.nanoTime() - start)).join();
+		} else {
+			rewardsService.calculateRewardsInBatches(users, execution.getRewardsBatchSize(),
+					progress -> recordLatencies(latencies, completedUsers, progress.batchUsers(), System.nanoTime() - start)).join();
+		}
+		long durationNanos = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		double durationSeconds = durationNanos / 1e9;
+		return new StepResult(scenario, userCount,
+				TimeUnit.NANOSECONDS.toMillis(durationNanos),
+				userCount / durationSeconds,
+				percentileMillis(latencies, 50),
+				percentileMillis(latencies, 95),
+				percentileMillis(latencies, 99),
+				latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6,
+				toMegabytes(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()),
+				toMegabytes(peakHeapUsage()),
+				totalGcCount() - gcCount,
+				totalGcMillis() - gcMillis);
+	}
+
+	private static void recordLatencies(long[] latencies, AtomicInteger completedUsers, int batchUsers, long latencyNanos) {
+		int from = completedUsers.getAndAdd(batchUsers);
+		Arrays.fill(latencies, from, from + batchUsers, latencyNanos);
+	}
+
+	private void writeReport(List<StepResult> results) throws IOException {
+		File parent = report.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		objectMapper.writeValue(new File(report.getPath() + ".json"), results);
+		try (PrintWriter csv = new PrintWriter(report.getPath() + ".csv")) {
+			csv.println("scenario,userCount,durationMillis,throughputUsersPerSecond,p50Millis,p95Millis,p99Millis,maxMillis,"
+					+ "heapUsedMegabytes,peakHeapMegabytes,gcCount,gcPauseMillis");
+			for (StepResult r : results) {
+				csv.println(r.scenario() + "," + r.userCount() + "," + r.durationMillis() + "," + r.throughputUsersPerSecond() + ","
+						+ r.p50Millis() + "," + r.p95Millis() + "," + r.p99Millis() + "," + r.maxMillis() + ","
+						+ r.heapUsedMegabytes() + "," + r.peakHeapMegabytes() + "," + r.gcCount() + "," + r.gcPauseMillis());
+			}
+		}
+	}
+
+	private List<String> checkThresholds(List<StepResult> results) throws IOException {
+		List<String> violations = new ArrayList<>();
+		for (StepResult result : results) {
+			if (result.p99Millis() > maxP99Millis) {
+				violations.add(result.scenario() + ", " + result.userCount() + " users: p99 " + result.p99Millis() + " ms is above " + maxP99Millis + " ms");
+			}
+			if (result.throughputUsersPerSecond() < minThroughput) {
+				violations.add(result.scenario() + ", " + result.userCount() + " users: throughput " + result.throughputUsersPerSecond()
+						+ " users/s is below " + minThroughput + " users/s");
+			}
+		}
+
+		if (baseline != null && baseline.exists()) {
+			StepResult[] baselineResults = objectMapper.readValue(baseline, StepResult[].class);
+			for (StepResult result : results) {
+				for (StepResult reference : baselineResults) {
+					if (reference.scenario() != result.scenario() || reference.userCount() != result.userCount()) {
+						continue;
+					}
+					double minAllowed = reference.throughputUsersPerSecond() * (1 - maxRegressionPercent / 100);
+					if (result.throughputUsersPerSecond() < minAllowed) {
+						violations.add(result.scenario() + ", " + result.userCount() + " users: throughput " + result.throughputUsersPerSecond()
+								+ " users/s regressed more than " + maxRegressionPercent + "% from the baseline "
+								+ reference.throughputUsersPerSecond() + " users/s");
+					}
+				}
+			}
+		}
+		return violations;
+	}
+
+	private static double percentileMillis(long[] sortedNanos, int percentile) {
+		if (sortedNanos.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+		return sortedNanos[Math.max(0, index)] / 1e6;
+	}
+
+	private static long totalGcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+	}
+
+	private static long totalGcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+	}
+
+	private static void resetPeakHeapUsage() {
+		heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+	}
+
+	private static long peakHeapUsage() {
+		return heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+	}
+
+	private static List<MemoryPoolMXBean> heapPools() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.toList();
+	}
+
+	private static long toMegabytes(long bytes) {
+		return bytes / (1024 * 1024);
+	}
+
+	public record StepResult(Scenario scenario, int userCount, long durationMillis, double throughputUsersPerSecond,
+							 double p50Millis, double p95Millis, double p99Millis, double maxMillis,
+							 long heapUsedMegabytes, long peakHeapMegabytes, long gcCount, long gcPauseMillis) {
+	}
+}